@@ -1,5 +1,6 @@
 package com.sim3d.engine;
 
+import com.sim3d.graphics.GLState;
 import com.sim3d.graphics.Renderer;
 import com.sim3d.graphics.TextRenderer;
 import com.sim3d.input.InputHandler;
@@ -36,6 +37,12 @@ public class Engine {
     private int frameCount = 0;
     private double fpsTimeAccumulator = 0.0;
     private double currentFPS = 0.0;
+
+    // GL state calls of the last frame, passed on and elided by GLState
+    private long issuedGLCalls;
+    private long elidedGLCalls;
+    private long frameIssuedGLCalls;
+    private long frameElidedGLCalls;
     
     // Portal cooldown to prevent rapid triggering
     private float portalCooldownTimer = 0.0f;
@@ -234,6 +241,13 @@ public class Engine {
     }
 
     private void render() {
+        frameIssuedGLCalls = GLState.getIssuedCalls() - issuedGLCalls;
+        frameElidedGLCalls = GLState.getElidedCalls() - elidedGLCalls;
+        issuedGLCalls = GLState.getIssuedCalls();
+        elidedGLCalls = GLState.getElidedCalls();
+
+        renderer.processAssetUploads();
+
         Environment currentEnv = world.getCurrentEnvironment();
         if (currentEnv != null) {
             renderer.render(currentEnv, player, window.getWidth(), window.getHeight());
@@ -271,6 +285,15 @@ public class Engine {
         float y = 30;
         
         textRenderer.renderText(fpsText, x, y, 0.5f, whiteColor, window.getWidth(), window.getHeight());
+
+        String objectsText = String.format("Objects: %d visible, %d culled, %d batches",
+            renderer.getVisibleObjects(), renderer.getCulledObjects(), renderer.getInstanceBatches());
+        x = window.getWidth() - textRenderer.getTextWidth(objectsText, 0.5f) - 20;
+        textRenderer.renderText(objectsText, x, y + 30, 0.5f, whiteColor, window.getWidth(), window.getHeight());
+
+        String stateText = String.format("GL state: %d calls, %d elided", frameIssuedGLCalls, frameElidedGLCalls);
+        x = window.getWidth() - textRenderer.getTextWidth(stateText, 0.5f) - 20;
+        textRenderer.renderText(stateText, x, y + 60, 0.5f, whiteColor, window.getWidth(), window.getHeight());
     }
 
     private boolean shouldExit() {
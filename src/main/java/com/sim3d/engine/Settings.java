@@ -25,6 +25,8 @@ public class Settings {
     private String logLevel;
     private DisplaySettings display;
     private WorldSettings world;
+    private ModelSettings models;
+    private AssetSettings assets;
     
     private Settings() {
         // Private constructor for singleton
@@ -60,6 +62,8 @@ public class Settings {
                         this.logLevel = data.logLevel;
                         this.display = data.display;
                         this.world = data.world;
+                        this.models = data.models;
+                        this.assets = data.assets;
                         logger.info("Default settings loaded from resources");
                     } else {
                         logger.warn("Invalid default settings format, creating default settings");
@@ -97,6 +101,14 @@ public class Settings {
                         this.world = data.world;
                         logger.info("Overriding World settings with user settings.");
                     }
+                    if (data.models != null) {
+                        this.models = data.models;
+                        logger.info("Overriding Model settings with user settings.");
+                    }
+                    if (data.assets != null) {
+                        this.assets = data.assets;
+                        logger.info("Overriding Asset settings with user settings.");
+                    }
                 } else {
                     logger.warn("Invalid user settings format, keeping default settings");
                 }
@@ -116,6 +128,8 @@ public class Settings {
         this.display.showFPS = false;
         this.world = new WorldSettings();
         this.world.path = DEFAULT_WORLD_PATH;
+        this.models = new ModelSettings();
+        this.assets = new AssetSettings();
     }
     
     public void saveSettings() {
@@ -126,6 +140,8 @@ public class Settings {
             data.logLevel = this.logLevel;
             data.display = this.display;
             data.world = this.world;
+            data.models = this.models;
+            data.assets = this.assets;
             gson.toJson(data, writer);
             logger.info("Settings saved to {}", SETTINGS_FILE);
         } catch (IOException e) {
@@ -202,12 +218,30 @@ public class Settings {
         }
     }
     
+    public ModelSettings getModels() {
+        return models != null ? models : new ModelSettings();
+    }
+    
+    public void setModels(ModelSettings models) {
+        this.models = models;
+    }
+    
+    public AssetSettings getAssets() {
+        return assets != null ? assets : new AssetSettings();
+    }
+    
+    public void setAssets(AssetSettings assets) {
+        this.assets = assets;
+    }
+    
     // Inner classes for JSON serialization
     public static class SettingsData {
         public WindowSettings window;
         public String logLevel;
         public DisplaySettings display;
         public WorldSettings world;
+        public ModelSettings models;
+        public AssetSettings assets;
     }
     
     public static class WindowSettings {
@@ -218,9 +252,50 @@ public class Settings {
     
     public static class DisplaySettings {
         public boolean showFPS;
+        // Skip objects whose bounding box lies outside the view frustum
+        public boolean frustumCulling = true;
     }
 
     public static class WorldSettings {
         public String path;
     }
-}
\ No newline at end of file
+
+    public static class ModelSettings {
+        // Generate smooth normals for OBJ faces without vn data, split where faces meet at more than creaseAngle
+        public boolean smoothNormals = true;
+        public float creaseAngle = 60.0f;
+        // Reorder triangles and vertices of loaded models for the GPU vertex cache
+        public boolean optimizeMeshes = true;
+        // Store model vertices quantized (16-bit positions, octahedral normals, half-float UVs)
+        public boolean compactVertices = true;
+        // Simplified levels of detail generated per mesh, each with about half the triangles of the one before
+        public int lodLevels = 3;
+        // Scales the projected size used to pick a level of detail; above 1 keeps full detail further away
+        public float lodBias = 1.0f;
+    }
+
+    public static class AssetSettings {
+        // Render thread time per frame spent creating GL objects for assets loaded in the background
+        public float uploadBudgetMs = 4.0f;
+        // Loaded assets waiting for upload; background loads pause while the queue is full
+        public int uploadQueueSize = 32;
+        // GPU memory for cached models and textures; above it, unreferenced ones are freed least recently used first
+        public int gpuBudgetMb = 512;
+        // Asset pack mapped at startup; resources it does not hold are read from the classpath
+        public String packFile = "assets.pack";
+        // Pack the textures of environment objects into texture arrays to draw them without texture switches
+        public boolean textureArrays = true;
+        // Textures wider or taller than this get an array of their own instead of sharing one
+        public int maxArrayTextureSize = 2048;
+        // Store textures with a precomputed mip chain, block-compressed to BC1/BC3, in the texture cache
+        public boolean compressTextures = true;
+        // Upload background-loaded textures through pixel buffers over several frames instead of all at once
+        public boolean streamTextures = true;
+        // Texture bytes streamed to the GPU per frame
+        public int textureStreamKb = 4096;
+        // Load only the small mip levels of cached textures first and stream finer ones as objects come closer
+        public boolean streamMips = true;
+        // Largest width or height of the mip levels loaded up front
+        public int mipTailSize = 64;
+    }
+}
@@ -0,0 +1,298 @@
+package com.sim3d.graphics;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Pure-Java BC1 and BC3 (S3TC) encoder and decoder for RGBA8 pixels, needing no GL context. Colors of each 4x4 block
+ * are fitted along their principal axis, then every pixel takes the nearest of the four palette colors; BC3 alpha
+ * uses the eight-value mode between the block's minimum and maximum. Blocks past the image edge repeat the last
+ * row and column. The decoder serves drivers without S3TC support and checks of the encoder.
+ */
+public final class BlockCompressor {
+    // Images with fewer blocks are encoded on the calling thread
+    private static final int PARALLEL_BLOCKS = 4096;
+
+    private BlockCompressor() {}
+
+    /**
+     * Encodes {@code width} by {@code height} RGBA8 pixels from {@code rgba} into {@code out}, both read and
+     * written from index 0 on. {@code out} must hold {@link TextureFormat#levelBytes(int, int)} bytes.
+     */
+    public static void encode(TextureFormat format, ByteBuffer rgba, int width, int height, ByteBuffer out) {
+        if (!format.isCompressed()) {
+            throw new IllegalArgumentException("Not a block format: " + format);
+        }
+        int blocksX = Math.max(1, (width + 3) / 4);
+        int blocksY = Math.max(1, (height + 3) / 4);
+        IntStream rows = IntStream.range(0, blocksY);
+        if (blocksX * blocksY >= PARALLEL_BLOCKS) {
+            rows = rows.parallel();
+        }
+        rows.forEach(by -> {
+            int[] block = new int[16 * 4];
+            for (int bx = 0; bx < blocksX; bx++) {
+                readBlock(rgba, width, height, bx, by, block);
+                int at = (by * blocksX + bx) * (format == TextureFormat.BC1 ? 8 : 16);
+                if (format == TextureFormat.BC3) {
+                    encodeAlpha(block, out, at);
+                    at += 8;
+                }
+                encodeColor(block, out, at);
+            }
+        });
+    }
+
+    /**
+     * Decodes blocks written by {@link #encode} back to RGBA8 pixels.
+     */
+    public static void decode(TextureFormat format, ByteBuffer blocks, int width, int height, ByteBuffer rgba) {
+        if (!format.isCompressed()) {
+            throw new IllegalArgumentException("Not a block format: " + format);
+        }
+        int blocksX = Math.max(1, (width + 3) / 4);
+        int blocksY = Math.max(1, (height + 3) / 4);
+        int[] block = new int[16 * 4];
+        for (int by = 0; by < blocksY; by++) {
+            for (int bx = 0; bx < blocksX; bx++) {
+                int at = (by * blocksX + bx) * (format == TextureFormat.BC1 ? 8 : 16);
+                if (format == TextureFormat.BC3) {
+                    decodeColor(blocks, at + 8, block);
+                    decodeAlpha(blocks, at, block);
+                } else {
+                    decodeColor(blocks, at, block);
+                }
+                for (int i = 0; i < 16; i++) {
+                    int x = bx * 4 + (i & 3);
+                    int y = by * 4 + (i >> 2);
+                    if (x < width && y < height) {
+                        int p = (y * width + x) * 4;
+                        for (int c = 0; c < 4; c++) {
+                            rgba.put(p + c, (byte) block[i * 4 + c]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether every pixel is fully opaque, so BC1 can store the image without losing alpha.
+     */
+    public static boolean isOpaque(ByteBuffer rgba, int width, int height) {
+        for (int i = 3, end = width * height * 4; i < end; i += 4) {
+            if (rgba.get(i) != (byte) 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void readBlock(ByteBuffer rgba, int width, int height, int bx, int by, int[] block) {
+        for (int i = 0; i < 16; i++) {
+            int x = Math.min(bx * 4 + (i & 3), width - 1);
+            int y = Math.min(by * 4 + (i >> 2), height - 1);
+            int p = (y * width + x) * 4;
+            for (int c = 0; c < 4; c++) {
+                block[i * 4 + c] = rgba.get(p + c) & 0xFF;
+            }
+        }
+    }
+
+    private static void encodeColor(int[] block, ByteBuffer out, int at) {
+        float meanR = 0;
+        float meanG = 0;
+        float meanB = 0;
+        for (int i = 0; i < 16; i++) {
+            meanR += block[i * 4];
+            meanG += block[i * 4 + 1];
+            meanB += block[i * 4 + 2];
+        }
+        meanR /= 16;
+        meanG /= 16;
+        meanB /= 16;
+
+        float rr = 0, rg = 0, rb = 0, gg = 0, gb = 0, bb = 0;
+        for (int i = 0; i < 16; i++) {
+            float r = block[i * 4] - meanR;
+            float g = block[i * 4 + 1] - meanG;
+            float b = block[i * 4 + 2] - meanB;
+            rr += r * r;
+            rg += r * g;
+            rb += r * b;
+            gg += g * g;
+            gb += g * b;
+            bb += b * b;
+        }
+
+        // Principal axis of the block's colors by power iteration
+        float axisR = 1;
+        float axisG = 1;
+        float axisB = 1;
+        for (int iteration = 0; iteration < 8; iteration++) {
+            float r = rr * axisR + rg * axisG + rb * axisB;
+            float g = rg * axisR + gg * axisG + gb * axisB;
+            float b = rb * axisR + gb * axisG + bb * axisB;
+            float length = Math.max(Math.abs(r), Math.max(Math.abs(g), Math.abs(b)));
+            if (length < 1e-6f) {
+                break;
+            }
+            axisR = r / length;
+            axisG = g / length;
+            axisB = b / length;
+        }
+
+        float minProjection = Float.MAX_VALUE;
+        float maxProjection = -Float.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            float projection = (block[i * 4] - meanR) * axisR + (block[i * 4 + 1] - meanG) * axisG
+                + (block[i * 4 + 2] - meanB) * axisB;
+            minProjection = Math.min(minProjection, projection);
+            maxProjection = Math.max(maxProjection, projection);
+        }
+        float lengthSquared = axisR * axisR + axisG * axisG + axisB * axisB;
+        float low = minProjection / lengthSquared;
+        float high = maxProjection / lengthSquared;
+        int color0 = to565(meanR + axisR * high, meanG + axisG * high, meanB + axisB * high);
+        int color1 = to565(meanR + axisR * low, meanG + axisG * low, meanB + axisB * low);
+        if (color0 < color1) {
+            int swap = color0;
+            color0 = color1;
+            color1 = swap;
+        }
+
+        int indices = 0;
+        if (color0 != color1) {
+            int[] palette = new int[4 * 3];
+            palette(color0, color1, palette);
+            for (int i = 0; i < 16; i++) {
+                int best = 0;
+                int bestDistance = Integer.MAX_VALUE;
+                for (int entry = 0; entry < 4; entry++) {
+                    int dr = block[i * 4] - palette[entry * 3];
+                    int dg = block[i * 4 + 1] - palette[entry * 3 + 1];
+                    int db = block[i * 4 + 2] - palette[entry * 3 + 2];
+                    int distance = dr * dr + dg * dg + db * db;
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = entry;
+                    }
+                }
+                indices |= best << (i * 2);
+            }
+        }
+
+        out.put(at, (byte) color0).put(at + 1, (byte) (color0 >>> 8));
+        out.put(at + 2, (byte) color1).put(at + 3, (byte) (color1 >>> 8));
+        for (int i = 0; i < 4; i++) {
+            out.put(at + 4 + i, (byte) (indices >>> (i * 8)));
+        }
+    }
+
+    private static void encodeAlpha(int[] block, ByteBuffer out, int at) {
+        int alpha0 = 0;
+        int alpha1 = 255;
+        for (int i = 0; i < 16; i++) {
+            alpha0 = Math.max(alpha0, block[i * 4 + 3]);
+            alpha1 = Math.min(alpha1, block[i * 4 + 3]);
+        }
+
+        long indices = 0;
+        if (alpha0 != alpha1) {
+            int[] palette = new int[8];
+            alphaPalette(alpha0, alpha1, palette);
+            for (int i = 0; i < 16; i++) {
+                int best = 0;
+                int bestDistance = Integer.MAX_VALUE;
+                for (int entry = 0; entry < 8; entry++) {
+                    int distance = Math.abs(block[i * 4 + 3] - palette[entry]);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = entry;
+                    }
+                }
+                indices |= (long) best << (i * 3);
+            }
+        }
+
+        out.put(at, (byte) alpha0).put(at + 1, (byte) alpha1);
+        for (int i = 0; i < 6; i++) {
+            out.put(at + 2 + i, (byte) (indices >>> (i * 8)));
+        }
+    }
+
+    private static void decodeColor(ByteBuffer blocks, int at, int[] block) {
+        int color0 = (blocks.get(at) & 0xFF) | (blocks.get(at + 1) & 0xFF) << 8;
+        int color1 = (blocks.get(at + 2) & 0xFF) | (blocks.get(at + 3) & 0xFF) << 8;
+        int indices = (blocks.get(at + 4) & 0xFF) | (blocks.get(at + 5) & 0xFF) << 8
+            | (blocks.get(at + 6) & 0xFF) << 16 | (blocks.get(at + 7) & 0xFF) << 24;
+        int[] palette = new int[4 * 3];
+        palette(color0, color1, palette);
+        for (int i = 0; i < 16; i++) {
+            int entry = (indices >>> (i * 2)) & 3;
+            block[i * 4] = palette[entry * 3];
+            block[i * 4 + 1] = palette[entry * 3 + 1];
+            block[i * 4 + 2] = palette[entry * 3 + 2];
+            block[i * 4 + 3] = 255;
+        }
+    }
+
+    private static void decodeAlpha(ByteBuffer blocks, int at, int[] block) {
+        int alpha0 = blocks.get(at) & 0xFF;
+        int alpha1 = blocks.get(at + 1) & 0xFF;
+        long indices = 0;
+        for (int i = 0; i < 6; i++) {
+            indices |= (long) (blocks.get(at + 2 + i) & 0xFF) << (i * 8);
+        }
+        int[] palette = new int[8];
+        alphaPalette(alpha0, alpha1, palette);
+        for (int i = 0; i < 16; i++) {
+            block[i * 4 + 3] = palette[(int) (indices >>> (i * 3)) & 7];
+        }
+    }
+
+    /**
+     * The four-color palette; encoded blocks always have {@code color0 >= color1}, and equal endpoints only use
+     * index 0, so the three-color mode of BC1 never changes the result.
+     */
+    private static void palette(int color0, int color1, int[] palette) {
+        from565(color0, palette, 0);
+        from565(color1, palette, 3);
+        for (int c = 0; c < 3; c++) {
+            palette[6 + c] = (2 * palette[c] + palette[3 + c] + 1) / 3;
+            palette[9 + c] = (palette[c] + 2 * palette[3 + c] + 1) / 3;
+        }
+    }
+
+    private static void alphaPalette(int alpha0, int alpha1, int[] palette) {
+        palette[0] = alpha0;
+        palette[1] = alpha1;
+        if (alpha0 > alpha1) {
+            for (int i = 1; i < 7; i++) {
+                palette[i + 1] = ((7 - i) * alpha0 + i * alpha1 + 3) / 7;
+            }
+        } else {
+            for (int i = 1; i < 5; i++) {
+                palette[i + 1] = ((5 - i) * alpha0 + i * alpha1 + 2) / 5;
+            }
+            palette[6] = 0;
+            palette[7] = 255;
+        }
+    }
+
+    private static int to565(float r, float g, float b) {
+        int r5 = Math.round(Math.max(0, Math.min(255, r)) * 31 / 255f);
+        int g6 = Math.round(Math.max(0, Math.min(255, g)) * 63 / 255f);
+        int b5 = Math.round(Math.max(0, Math.min(255, b)) * 31 / 255f);
+        return r5 << 11 | g6 << 5 | b5;
+    }
+
+    private static void from565(int color, int[] rgb, int offset) {
+        int r5 = color >>> 11 & 31;
+        int g6 = color >>> 5 & 63;
+        int b5 = color & 31;
+        rgb[offset] = r5 << 3 | r5 >>> 2;
+        rgb[offset + 1] = g6 << 2 | g6 >>> 4;
+        rgb[offset + 2] = b5 << 3 | b5 >>> 2;
+    }
+}
@@ -92,6 +92,10 @@ public class Camera {
         this.yaw = yaw;
     }
 
+    public float getFarPlane() {
+        return farPlane;
+    }
+
     public float getFov() {
         return fov;
     }
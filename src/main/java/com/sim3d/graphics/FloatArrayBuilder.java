@@ -0,0 +1,85 @@
+package com.sim3d.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Growable {@code float} array used to assemble geometry without boxing. {@link #array()} exposes the backing
+ * storage so callers can upload the first {@link #size()} elements without another copy.
+ */
+public final class FloatArrayBuilder {
+    private float[] data;
+    private int size;
+
+    public FloatArrayBuilder() {
+        this(64);
+    }
+
+    public FloatArrayBuilder(int initialCapacity) {
+        this.data = new float[Math.max(1, initialCapacity)];
+    }
+
+    public FloatArrayBuilder add(float value) {
+        ensureCapacity(size + 1);
+        data[size++] = value;
+        return this;
+    }
+
+    public FloatArrayBuilder add(float a, float b) {
+        ensureCapacity(size + 2);
+        data[size++] = a;
+        data[size++] = b;
+        return this;
+    }
+
+    public FloatArrayBuilder add(float a, float b, float c) {
+        ensureCapacity(size + 3);
+        data[size++] = a;
+        data[size++] = b;
+        data[size++] = c;
+        return this;
+    }
+
+    public FloatArrayBuilder add(float[] values, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(values, offset, data, size, length);
+        size += length;
+        return this;
+    }
+
+    public float get(int index) {
+        return data[index];
+    }
+
+    public void set(int index, float value) {
+        data[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length + (data.length >> 1) + 16));
+        }
+    }
+
+    /**
+     * Backing array; only the first {@link #size()} elements are valid and it is replaced when the builder grows.
+     */
+    public float[] array() {
+        return data;
+    }
+
+    public float[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,256 @@
+package com.sim3d.graphics;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * Shadow copy of the OpenGL state the engine changes: the bound program, vertex array, buffers and textures, and
+ * blend, depth and cull state. Every class touching that state goes through here, so calls that would not change
+ * anything are dropped without reaching the driver, and cached values stand in for {@code glIsEnabled} queries.
+ * Render thread only; deleting objects goes through here too, since GL unbinds them.
+ */
+public final class GLState {
+    private static final int TEXTURE_UNITS = 16;
+    private static final int UNKNOWN = -1;
+
+    private static int program;
+    private static int vertexArray;
+    private static int arrayBuffer;
+    private static int pixelUnpackBuffer;
+    private static int activeUnit;
+    private static final int[] textures2D = new int[TEXTURE_UNITS];
+    private static final int[] textureArrays = new int[TEXTURE_UNITS];
+    private static int blend;
+    private static int depthTest;
+    private static int cullFace;
+    private static int depthMask;
+    private static int blendSource;
+    private static int blendDestination;
+    private static int cullFaceMode;
+
+    private static long issuedCalls;
+    private static long elidedCalls;
+
+    static {
+        invalidate();
+    }
+
+    private GLState() {
+    }
+
+    /**
+     * Forgets all cached state, so the next call of each kind reaches GL. Call after a new context is made current.
+     */
+    public static void invalidate() {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        arrayBuffer = UNKNOWN;
+        pixelUnpackBuffer = UNKNOWN;
+        activeUnit = UNKNOWN;
+        Arrays.fill(textures2D, UNKNOWN);
+        Arrays.fill(textureArrays, UNKNOWN);
+        blend = UNKNOWN;
+        depthTest = UNKNOWN;
+        cullFace = UNKNOWN;
+        depthMask = UNKNOWN;
+        blendSource = UNKNOWN;
+        blendDestination = UNKNOWN;
+        cullFaceMode = UNKNOWN;
+    }
+
+    public static void useProgram(int id) {
+        if (changed(program, id)) {
+            glUseProgram(id);
+            program = id;
+        }
+    }
+
+    public static void bindVertexArray(int id) {
+        if (changed(vertexArray, id)) {
+            glBindVertexArray(id);
+            vertexArray = id;
+        }
+    }
+
+    /**
+     * Binds a buffer. Element array bindings belong to the bound vertex array, so they are passed on uncached.
+     */
+    public static void bindBuffer(int target, int id) {
+        switch (target) {
+            case GL_ARRAY_BUFFER -> {
+                if (changed(arrayBuffer, id)) {
+                    glBindBuffer(target, id);
+                    arrayBuffer = id;
+                }
+            }
+            case GL_PIXEL_UNPACK_BUFFER -> {
+                if (changed(pixelUnpackBuffer, id)) {
+                    glBindBuffer(target, id);
+                    pixelUnpackBuffer = id;
+                }
+            }
+            default -> {
+                issuedCalls++;
+                glBindBuffer(target, id);
+            }
+        }
+    }
+
+    /**
+     * Binds a {@code GL_TEXTURE_2D} or {@code GL_TEXTURE_2D_ARRAY} texture to {@code unit} and leaves that unit
+     * active, so texture calls that follow apply to it.
+     */
+    public static void bindTexture(int unit, int target, int id) {
+        if (changed(activeUnit, unit)) {
+            glActiveTexture(GL_TEXTURE0 + unit);
+            activeUnit = unit;
+        }
+        int[] bound = target == GL_TEXTURE_2D_ARRAY ? textureArrays : textures2D;
+        if (changed(bound[unit], id)) {
+            glBindTexture(target, id);
+            bound[unit] = id;
+        }
+    }
+
+    /**
+     * Enables or disables {@code GL_BLEND}, {@code GL_DEPTH_TEST} or {@code GL_CULL_FACE}.
+     */
+    public static void setEnabled(int capability, boolean enabled) {
+        int value = enabled ? 1 : 0;
+        if (changed(capability(capability), value)) {
+            if (enabled) {
+                glEnable(capability);
+            } else {
+                glDisable(capability);
+            }
+            switch (capability) {
+                case GL_BLEND -> blend = value;
+                case GL_DEPTH_TEST -> depthTest = value;
+                case GL_CULL_FACE -> cullFace = value;
+                default -> throw new IllegalArgumentException("Untracked capability: " + capability);
+            }
+        }
+    }
+
+    /**
+     * Whether a capability is enabled, from the cache when known.
+     */
+    public static boolean isEnabled(int capability) {
+        int value = capability(capability);
+        if (value != UNKNOWN) {
+            elidedCalls++;
+            return value == 1;
+        }
+        issuedCalls++;
+        return glIsEnabled(capability);
+    }
+
+    private static int capability(int capability) {
+        return switch (capability) {
+            case GL_BLEND -> blend;
+            case GL_DEPTH_TEST -> depthTest;
+            case GL_CULL_FACE -> cullFace;
+            default -> throw new IllegalArgumentException("Untracked capability: " + capability);
+        };
+    }
+
+    public static void depthMask(boolean enabled) {
+        int value = enabled ? 1 : 0;
+        if (changed(depthMask, value)) {
+            glDepthMask(enabled);
+            depthMask = value;
+        }
+    }
+
+    public static void blendFunc(int source, int destination) {
+        if (blendSource == source && blendDestination == destination) {
+            elidedCalls++;
+            return;
+        }
+        issuedCalls++;
+        glBlendFunc(source, destination);
+        blendSource = source;
+        blendDestination = destination;
+    }
+
+    public static void cullFace(int mode) {
+        if (changed(cullFaceMode, mode)) {
+            glCullFace(mode);
+            cullFaceMode = mode;
+        }
+    }
+
+    public static void deleteProgram(int id) {
+        glDeleteProgram(id);
+        if (program == id) {
+            program = UNKNOWN;
+        }
+    }
+
+    public static void deleteVertexArray(int id) {
+        glDeleteVertexArrays(id);
+        if (vertexArray == id) {
+            vertexArray = 0;
+        }
+    }
+
+    public static void deleteBuffer(int id) {
+        glDeleteBuffers(id);
+        if (arrayBuffer == id) {
+            arrayBuffer = 0;
+        }
+        if (pixelUnpackBuffer == id) {
+            pixelUnpackBuffer = 0;
+        }
+    }
+
+    public static void deleteTexture(int id) {
+        glDeleteTextures(id);
+        for (int unit = 0; unit < TEXTURE_UNITS; unit++) {
+            if (textures2D[unit] == id) {
+                textures2D[unit] = 0;
+            }
+            if (textureArrays[unit] == id) {
+                textureArrays[unit] = 0;
+            }
+        }
+    }
+
+    /**
+     * Counts a call and tells whether it would change {@code current}.
+     */
+    private static boolean changed(int current, int value) {
+        if (current == value) {
+            elidedCalls++;
+            return false;
+        }
+        issuedCalls++;
+        return true;
+    }
+
+    /**
+     * Counts a uniform update a {@link ShaderProgram} dropped because the uniform already held the value.
+     */
+    static void countElided(boolean elided) {
+        if (elided) {
+            elidedCalls++;
+        } else {
+            issuedCalls++;
+        }
+    }
+
+    /**
+     * State changes passed on to GL since startup.
+     */
+    public static long getIssuedCalls() {
+        return issuedCalls;
+    }
+
+    /**
+     * State changes and queries dropped since startup because GL already had, or was known to have, that state.
+     */
+    public static long getElidedCalls() {
+        return elidedCalls;
+    }
+}
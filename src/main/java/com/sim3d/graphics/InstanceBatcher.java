@@ -0,0 +1,117 @@
+package com.sim3d.graphics;
+
+import org.joml.Matrix3fc;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the objects of a frame that can share one instanced draw: the same mesh or model at the same level of
+ * detail, with the same texture or texture array and material handling. Batches are reused from frame to frame;
+ * those left empty are dropped, so they hold no stale models.
+ */
+final class InstanceBatcher {
+    private final Map<Key, Batch> batches = new LinkedHashMap<>();
+    private final InstanceBuffer instances = new InstanceBuffer();
+
+    /**
+     * What a batch draws: a primitive {@link Mesh} or a model, and the state it is drawn with.
+     */
+    record Key(Object drawable, int lod, Texture texture, TextureArray array, boolean materials) {}
+
+    static final class Batch {
+        final Key key;
+        private float[] data = new float[16 * InstanceBuffer.FLOATS];
+        private int count;
+        private int first;
+        private float nearest;
+        private float farthest;
+
+        Batch(Key key) {
+            this.key = key;
+        }
+
+        void add(Matrix4fc model, Matrix3fc normal, Vector3fc color, float layer, float depth) {
+            if ((count + 1) * InstanceBuffer.FLOATS > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            int offset = count * InstanceBuffer.FLOATS;
+            model.get(data, offset);
+            data[offset + 16] = color.x();
+            data[offset + 17] = color.y();
+            data[offset + 18] = color.z();
+            data[offset + 19] = layer;
+            normal.get(data, offset + 20);
+            nearest = count == 0 ? depth : Math.min(nearest, depth);
+            farthest = count == 0 ? depth : Math.max(farthest, depth);
+            count++;
+        }
+
+        int count() {
+            return count;
+        }
+
+        /**
+         * Index of the batch's first instance in the uploaded {@link InstanceBuffer}.
+         */
+        int first() {
+            return first;
+        }
+
+        /**
+         * Camera distance of the nearest instance added this frame.
+         */
+        float nearest() {
+            return nearest;
+        }
+
+        /**
+         * Camera distance of the farthest instance added this frame.
+         */
+        float farthest() {
+            return farthest;
+        }
+    }
+
+    /**
+     * Starts a new frame, dropping the batches nothing was added to in the last one.
+     */
+    void begin() {
+        batches.values().removeIf(batch -> batch.count == 0);
+        batches.values().forEach(batch -> batch.count = 0);
+    }
+
+    void add(Key key, Matrix4fc model, Matrix3fc normal, Vector3fc color, float layer, float depth) {
+        batches.computeIfAbsent(key, Batch::new).add(model, normal, color, layer, depth);
+    }
+
+    /**
+     * Uploads the instances of all batches and returns the batches to draw, in the order they were first used.
+     */
+    List<Batch> upload() {
+        instances.clear();
+        List<Batch> filled = new ArrayList<>();
+        for (Batch batch : batches.values()) {
+            if (batch.count > 0) {
+                batch.first = instances.put(batch.data, batch.count);
+                filled.add(batch);
+            }
+        }
+        instances.upload();
+        return filled;
+    }
+
+    InstanceBuffer getInstances() {
+        return instances;
+    }
+
+    void cleanup() {
+        batches.clear();
+        instances.cleanup();
+    }
+}
@@ -0,0 +1,98 @@
+package com.sim3d.graphics;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * Per-instance data for instanced draws, rewritten every frame: the instances of all batches are gathered on the
+ * CPU, then uploaded into one stream VBO at once, orphaning last frame's storage so the upload never waits for the
+ * GPU. Each instance is its model matrix, a colour tint and the texture array layer, then its normal matrix.
+ */
+public final class InstanceBuffer {
+    // The model matrix takes locations 6 to 9 and the normal matrix 11 to 13, one per column
+    static final int MODEL_LOCATION = 6;
+    static final int COLOR_LOCATION = 10;
+    static final int NORMAL_LOCATION = 11;
+    static final int FLOATS = 29;
+    private static final int STRIDE = FLOATS * Float.BYTES;
+
+    private int vboId;
+    private int capacity = 256;
+    private FloatBuffer data = MemoryUtil.memAllocFloat(capacity * FLOATS);
+    private int count;
+
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * Appends {@code instances} instances from {@code source} and returns the index of the first.
+     */
+    int put(float[] source, int instances) {
+        if (count + instances > capacity) {
+            capacity = Math.max(capacity * 2, count + instances);
+            data = MemoryUtil.memRealloc(data, capacity * FLOATS);
+        }
+        data.put(count * FLOATS, source, 0, instances * FLOATS);
+        int first = count;
+        count += instances;
+        return first;
+    }
+
+    /**
+     * Uploads the instances appended since {@link #clear()}.
+     */
+    void upload() {
+        if (vboId == 0) {
+            vboId = glGenBuffers();
+        }
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vboId);
+        glBufferData(GL_ARRAY_BUFFER, (long) capacity * STRIDE, GL_STREAM_DRAW);
+        glBufferSubData(GL_ARRAY_BUFFER, 0, data.limit(count * FLOATS));
+        data.clear();
+    }
+
+    /**
+     * Points the instance attributes of the bound vertex array at the instances from {@code first} on.
+     */
+    void enableAttributes(int first) {
+        long offset = (long) first * STRIDE;
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vboId);
+        for (int column = 0; column < 4; column++) {
+            glVertexAttribPointer(MODEL_LOCATION + column, 4, GL_FLOAT, false, STRIDE,
+                offset + (long) column * 4 * Float.BYTES);
+            glVertexAttribDivisor(MODEL_LOCATION + column, 1);
+            glEnableVertexAttribArray(MODEL_LOCATION + column);
+        }
+        glVertexAttribPointer(COLOR_LOCATION, 4, GL_FLOAT, false, STRIDE, offset + 16L * Float.BYTES);
+        glVertexAttribDivisor(COLOR_LOCATION, 1);
+        glEnableVertexAttribArray(COLOR_LOCATION);
+        for (int column = 0; column < 3; column++) {
+            glVertexAttribPointer(NORMAL_LOCATION + column, 3, GL_FLOAT, false, STRIDE,
+                offset + (20L + column * 3) * Float.BYTES);
+            glVertexAttribDivisor(NORMAL_LOCATION + column, 1);
+            glEnableVertexAttribArray(NORMAL_LOCATION + column);
+        }
+    }
+
+    /**
+     * Turns the instance attributes of the bound vertex array off again, so plain draws of it are unaffected.
+     */
+    void disableAttributes() {
+        for (int location = MODEL_LOCATION; location < NORMAL_LOCATION + 3; location++) {
+            glDisableVertexAttribArray(location);
+        }
+    }
+
+    public void cleanup() {
+        if (vboId != 0) {
+            GLState.deleteBuffer(vboId);
+            vboId = 0;
+        }
+        MemoryUtil.memFree(data);
+        data = null;
+    }
+}
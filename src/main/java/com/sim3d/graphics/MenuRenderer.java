@@ -23,8 +23,8 @@ public class MenuRenderer {
         vao = glGenVertexArrays();
         vbo = glGenBuffers();
         
-        glBindVertexArray(vao);
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        GLState.bindVertexArray(vao);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vbo);
         
         // Position (2 floats) + TexCoord (2 floats) = 4 floats per vertex
         glBufferData(GL_ARRAY_BUFFER, 6 * 4 * Float.BYTES, GL_DYNAMIC_DRAW);
@@ -37,21 +37,21 @@ public class MenuRenderer {
         glVertexAttribPointer(1, 2, GL_FLOAT, false, 4 * Float.BYTES, 2 * Float.BYTES);
         glEnableVertexAttribArray(1);
         
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, 0);
+        GLState.bindVertexArray(0);
     }
     
     public void renderMenuBackground(int windowWidth, int windowHeight) {
         // Save current OpenGL state
-        boolean depthTestEnabled = glIsEnabled(GL_DEPTH_TEST);
-        boolean cullFaceEnabled = glIsEnabled(GL_CULL_FACE);
-        boolean blendEnabled = glIsEnabled(GL_BLEND);
+        boolean depthTestEnabled = GLState.isEnabled(GL_DEPTH_TEST);
+        boolean cullFaceEnabled = GLState.isEnabled(GL_CULL_FACE);
+        boolean blendEnabled = GLState.isEnabled(GL_BLEND);
         
         // Set up state for UI rendering
-        glDisable(GL_DEPTH_TEST);
-        glDisable(GL_CULL_FACE);
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        GLState.setEnabled(GL_DEPTH_TEST, false);
+        GLState.setEnabled(GL_CULL_FACE, false);
+        GLState.setEnabled(GL_BLEND, true);
+        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
         
         shaderProgram.bind();
         
@@ -75,33 +75,29 @@ public class MenuRenderer {
             0, windowHeight, 0, 0
         };
         
-        glBindVertexArray(vao);
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        GLState.bindVertexArray(vao);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vbo);
         glBufferSubData(GL_ARRAY_BUFFER, 0, vertices);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
         
         glDrawArrays(GL_TRIANGLES, 0, 6);
         
-        glBindVertexArray(0);
-        shaderProgram.unbind();
-        
         // Restore OpenGL state
-        if (!blendEnabled) glDisable(GL_BLEND);
-        if (depthTestEnabled) glEnable(GL_DEPTH_TEST);
-        if (cullFaceEnabled) glEnable(GL_CULL_FACE);
+        if (!blendEnabled) GLState.setEnabled(GL_BLEND, false);
+        if (depthTestEnabled) GLState.setEnabled(GL_DEPTH_TEST, true);
+        if (cullFaceEnabled) GLState.setEnabled(GL_CULL_FACE, true);
     }
     
     public void renderMenuPanel(int windowWidth, int windowHeight) {
         // Save current OpenGL state
-        boolean depthTestEnabled = glIsEnabled(GL_DEPTH_TEST);
-        boolean cullFaceEnabled = glIsEnabled(GL_CULL_FACE);
-        boolean blendEnabled = glIsEnabled(GL_BLEND);
+        boolean depthTestEnabled = GLState.isEnabled(GL_DEPTH_TEST);
+        boolean cullFaceEnabled = GLState.isEnabled(GL_CULL_FACE);
+        boolean blendEnabled = GLState.isEnabled(GL_BLEND);
         
         // Set up state for UI rendering
-        glDisable(GL_DEPTH_TEST);
-        glDisable(GL_CULL_FACE);
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        GLState.setEnabled(GL_DEPTH_TEST, false);
+        GLState.setEnabled(GL_CULL_FACE, false);
+        GLState.setEnabled(GL_BLEND, true);
+        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
         
         shaderProgram.bind();
         
@@ -128,20 +124,16 @@ public class MenuRenderer {
             panelX, panelY + panelHeight,      0, 0
         };
         
-        glBindVertexArray(vao);
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        GLState.bindVertexArray(vao);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vbo);
         glBufferSubData(GL_ARRAY_BUFFER, 0, vertices);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
         
         glDrawArrays(GL_TRIANGLES, 0, 6);
         
-        glBindVertexArray(0);
-        shaderProgram.unbind();
-        
         // Restore OpenGL state
-        if (!blendEnabled) glDisable(GL_BLEND);
-        if (depthTestEnabled) glEnable(GL_DEPTH_TEST);
-        if (cullFaceEnabled) glEnable(GL_CULL_FACE);
+        if (!blendEnabled) GLState.setEnabled(GL_BLEND, false);
+        if (depthTestEnabled) GLState.setEnabled(GL_DEPTH_TEST, true);
+        if (cullFaceEnabled) GLState.setEnabled(GL_CULL_FACE, true);
     }
     
     public void renderMenuText(String text, float x, float y, float scale, float[] color) {
@@ -187,10 +179,10 @@ public class MenuRenderer {
             textRenderer.cleanup();
         }
         if (vao != 0) {
-            glDeleteVertexArrays(vao);
+            GLState.deleteVertexArray(vao);
         }
         if (vbo != 0) {
-            glDeleteBuffers(vbo);
+            GLState.deleteBuffer(vbo);
         }
     }
 }
\ No newline at end of file
@@ -2,8 +2,7 @@ package com.sim3d.graphics;
 
 import org.lwjgl.system.MemoryUtil;
 
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.ByteBuffer;
 
 import static org.lwjgl.opengl.GL33.*;
 
@@ -12,56 +11,51 @@ public class Mesh {
     private int vboId;
     private int eboId;
     private int vertexCount;
-    private boolean hasTextureCoords;
+    private int indexType;
+    private int[] lodIndexCounts;
+    private long[] lodByteOffsets;
+    private long gpuBytes;
+    private final VertexFormat format;
+    private final float[] positionDecode;
 
     public Mesh(float[] vertices, int[] indices) {
         this(vertices, indices, false);
     }
 
     public Mesh(float[] vertices, int[] indices, boolean hasTextureCoords) {
-        vertexCount = indices.length;
-        this.hasTextureCoords = hasTextureCoords;
+        this(vertices, indices, VertexFormat.standard(hasTextureCoords));
+    }
+
+    public Mesh(float[] vertices, int[] indices, VertexFormat format) {
+        this(vertices, vertices.length, indices, indices.length, format);
+    }
+
+    public Mesh(FloatArrayBuilder vertices, IntArrayBuilder indices, boolean hasTextureCoords) {
+        this(vertices, indices, VertexFormat.standard(hasTextureCoords));
+    }
+
+    public Mesh(FloatArrayBuilder vertices, IntArrayBuilder indices, VertexFormat format) {
+        this(vertices.array(), vertices.size(), indices.array(), indices.size(), format);
+    }
+
+    /**
+     * Encodes vertices given in the {@link VertexFormat} source layout into {@code format} and uploads them.
+     */
+    private Mesh(float[] vertices, int vertexLength, int[] indices, int indexLength, VertexFormat format) {
+        this.format = format;
+        int count = vertexLength / format.sourceStride();
+        this.positionDecode = format.positionDecode(vertices, count);
+
+        ByteBuffer vertexBuffer = null;
+        ByteBuffer indexBuffer = null;
 
-        FloatBuffer vertexBuffer = null;
-        IntBuffer indexBuffer = null;
-        
         try {
-            vaoId = glGenVertexArrays();
-            glBindVertexArray(vaoId);
-
-            vboId = glGenBuffers();
-            vertexBuffer = MemoryUtil.memAllocFloat(vertices.length);
-            vertexBuffer.put(vertices).flip();
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, vertexBuffer, GL_STATIC_DRAW);
-
-            eboId = glGenBuffers();
-            indexBuffer = MemoryUtil.memAllocInt(indices.length);
-            indexBuffer.put(indices).flip();
-            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboId);
-            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indexBuffer, GL_STATIC_DRAW);
-
-            int stride = hasTextureCoords ? 11 * Float.BYTES : 9 * Float.BYTES;
-
-            // Position attribute (location = 0)
-            glVertexAttribPointer(0, 3, GL_FLOAT, false, stride, 0);
-            glEnableVertexAttribArray(0);
-
-            // Color attribute (location = 1)
-            glVertexAttribPointer(1, 3, GL_FLOAT, false, stride, 3 * Float.BYTES);
-            glEnableVertexAttribArray(1);
-
-            // Normal attribute (location = 2)
-            glVertexAttribPointer(2, 3, GL_FLOAT, false, stride, 6 * Float.BYTES);
-            glEnableVertexAttribArray(2);
-
-            // Texture coordinate attribute (location = 3) - only enable if texture coordinates are available
-            if (hasTextureCoords) {
-                glVertexAttribPointer(3, 2, GL_FLOAT, false, stride, 9 * Float.BYTES);
-                glEnableVertexAttribArray(3);
-            }
+            vertexBuffer = MemoryUtil.memAlloc(count * format.stride());
+            format.encodeVertices(vertices, count, positionDecode, vertexBuffer);
+            indexBuffer = MemoryUtil.memAlloc(indexLength * VertexFormat.indexSize(count));
+            VertexFormat.encodeIndices(indices, indexLength, count, indexBuffer);
 
-            glBindVertexArray(0);
+            upload(vertexBuffer.flip(), indexBuffer.flip());
         } finally {
             if (vertexBuffer != null) {
                 MemoryUtil.memFree(vertexBuffer);
@@ -72,29 +66,108 @@ public class Mesh {
         }
     }
 
-    public void render() {
-        glBindVertexArray(vaoId);
-        glDrawElements(GL_TRIANGLES, vertexCount, GL_UNSIGNED_INT, 0);
-        glBindVertexArray(0);
+    /**
+     * Uploads vertex and index bytes that are already encoded in {@code format}, e.g. slices of a memory-mapped
+     * mesh cache file. Both buffers must be direct and in native byte order; the index size follows
+     * {@link VertexFormat#indexSize(int)}.
+     */
+    public Mesh(ByteBuffer vertexData, ByteBuffer indexData, VertexFormat format, float[] positionDecode) {
+        this(vertexData, indexData, format, positionDecode, null);
     }
 
-    public void cleanup() {
-        glDisableVertexAttribArray(0);
-        glDisableVertexAttribArray(1);
-        glDisableVertexAttribArray(2);
-        if (hasTextureCoords) {
-            glDisableVertexAttribArray(3); // Only disable texture coordinate attribute if it was enabled
+    /**
+     * Like {@link #Mesh(ByteBuffer, ByteBuffer, VertexFormat, float[])}, with the index data holding several levels
+     * of detail over the same vertices back to back, {@code lodIndexCounts} indices each, most detailed first.
+     */
+    public Mesh(ByteBuffer vertexData, ByteBuffer indexData, VertexFormat format, float[] positionDecode,
+                int[] lodIndexCounts) {
+        this.format = format;
+        this.positionDecode = positionDecode.clone();
+        this.lodIndexCounts = lodIndexCounts != null ? lodIndexCounts.clone() : null;
+        upload(vertexData, indexData);
+    }
+
+    private void upload(ByteBuffer vertexData, ByteBuffer indexData) {
+        int count = vertexData.remaining() / format.stride();
+        int indexSize = VertexFormat.indexSize(count);
+        vertexCount = indexData.remaining() / indexSize;
+        gpuBytes = (long) vertexData.remaining() + indexData.remaining();
+        indexType = indexSize == Short.BYTES ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
+
+        if (lodIndexCounts == null) {
+            lodIndexCounts = new int[] { vertexCount };
+        }
+        lodByteOffsets = new long[lodIndexCounts.length];
+        for (int lod = 1; lod < lodIndexCounts.length; lod++) {
+            lodByteOffsets[lod] = lodByteOffsets[lod - 1] + (long) lodIndexCounts[lod - 1] * indexSize;
         }
 
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glDeleteBuffers(vboId);
-        glDeleteBuffers(eboId);
+        vaoId = glGenVertexArrays();
+        GLState.bindVertexArray(vaoId);
+
+        vboId = glGenBuffers();
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vboId);
+        glBufferData(GL_ARRAY_BUFFER, vertexData, GL_STATIC_DRAW);
+
+        eboId = glGenBuffers();
+        GLState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboId);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indexData, GL_STATIC_DRAW);
 
-        glBindVertexArray(0);
-        glDeleteVertexArrays(vaoId);
+        format.enableAttributes();
+
+        GLState.bindVertexArray(0);
+    }
+
+    public void render() {
+        render(0);
+    }
+
+    /**
+     * Draws level of detail {@code lod}, clamped to the coarsest level this mesh has. The vertex array stays bound
+     * afterwards, so drawing the same mesh again does not rebind it.
+     */
+    public void render(int lod) {
+        int level = Math.max(0, Math.min(lod, lodIndexCounts.length - 1));
+        format.applyDecode(positionDecode);
+        GLState.bindVertexArray(vaoId);
+        glDrawElements(GL_TRIANGLES, lodIndexCounts[level], indexType, lodByteOffsets[level]);
+    }
+
+    /**
+     * Draws level of detail {@code lod} once for each of {@code count} instances in {@code instances}, starting at
+     * instance {@code first}.
+     */
+    public void renderInstanced(int lod, InstanceBuffer instances, int first, int count) {
+        int level = Math.max(0, Math.min(lod, lodIndexCounts.length - 1));
+        format.applyDecode(positionDecode);
+        GLState.bindVertexArray(vaoId);
+        instances.enableAttributes(first);
+        glDrawElementsInstanced(GL_TRIANGLES, lodIndexCounts[level], indexType, lodByteOffsets[level], count);
+        instances.disableAttributes();
+    }
+
+    public int getLodCount() {
+        return lodIndexCounts.length;
+    }
+
+    public void cleanup() {
+        GLState.deleteBuffer(vboId);
+        GLState.deleteBuffer(eboId);
+        GLState.deleteVertexArray(vaoId);
     }
 
     public boolean hasTextureCoords() {
-        return hasTextureCoords;
+        return format.hasTextureCoords();
+    }
+
+    /**
+     * Bytes of vertex and index data this mesh holds in GPU buffers.
+     */
+    public long getGpuBytes() {
+        return gpuBytes;
+    }
+
+    public VertexFormat getFormat() {
+        return format;
     }
 }
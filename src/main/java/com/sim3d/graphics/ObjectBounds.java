@@ -0,0 +1,40 @@
+package com.sim3d.graphics;
+
+import com.sim3d.model.Transform;
+import org.joml.FrustumIntersection;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+/**
+ * World-space bounding box of one object for frustum culling. It is recomputed only when the object's transform or
+ * the local bounds it was built from change, such as when a model finishes loading in place of its primitive.
+ */
+final class ObjectBounds {
+    private Transform transform;
+    private int version;
+    // The model or primitive type the local bounds came from
+    private Object source;
+    private final Vector3f min = new Vector3f();
+    private final Vector3f max = new Vector3f();
+
+    /**
+     * Whether the box still matches {@code transform} and the local bounds of {@code source}.
+     */
+    boolean isCurrent(Transform transform, Object source) {
+        return source == this.source && transform == this.transform && transform.getVersion() == version;
+    }
+
+    /**
+     * Transforms the local bounds of {@code source} to world space, as the renderer places the object.
+     */
+    void update(Transform transform, Object source, Vector3fc localMin, Vector3fc localMax) {
+        this.source = source;
+        this.transform = transform;
+        version = transform.getVersion();
+        transform.getWorldMatrix().transformAab(localMin, localMax, min, max);
+    }
+
+    boolean intersects(FrustumIntersection frustum) {
+        return frustum.testAab(min, max);
+    }
+}
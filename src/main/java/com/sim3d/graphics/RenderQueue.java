@@ -0,0 +1,121 @@
+package com.sim3d.graphics;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The draw commands of one frame, ordered by 64-bit sort keys. Opaque draws come first, grouped by shader, texture
+ * and mesh so consecutive draws share state, and nearest first within a group so hidden fragments fail the depth
+ * test early. Transparent draws follow farthest first, so each blends over what is behind it. Keys are radix
+ * sorted, in time linear in the number of commands.
+ */
+final class RenderQueue {
+    static final int OPAQUE = 0;
+    static final int TRANSPARENT = 1;
+
+    // Key layout below the 2 pass bits: shader, texture and mesh ids then depth for opaque draws, inverted depth
+    // first for transparent ones
+    private static final int DEPTH_BITS = 24;
+    private static final int ID_BITS = 16;
+    private static final int SHADER_BITS = 4;
+    private static final int STATE_BITS = SHADER_BITS + 2 * ID_BITS;
+    private static final long DEPTH_MAX = (1L << DEPTH_BITS) - 1;
+    private static final int ID_MAX = (1 << ID_BITS) - 1;
+
+    private long[] keys = new long[64];
+    private long[] sortedKeys = new long[64];
+    private Object[] commands = new Object[64];
+    private Object[] sortedCommands = new Object[64];
+    private final int[] counts = new int[256];
+    private int count;
+    private float maxDepth = 1.0f;
+    // Ids of the textures and meshes queued this frame, in the order they were first seen
+    private final Map<Object, Integer> ids = new IdentityHashMap<>();
+
+    /**
+     * Empties the queue for a frame whose draws lie within {@code maxDepth} of the camera.
+     */
+    void begin(float maxDepth) {
+        Arrays.fill(commands, 0, count, null);
+        count = 0;
+        ids.clear();
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Queues {@code command}, drawn with {@code texture} and {@code mesh}, either of which may be {@code null}, at
+     * {@code depth} from the camera.
+     */
+    void add(int pass, int shader, Object texture, Object mesh, float depth, Object command) {
+        long quantized = (long) (Math.max(0.0f, Math.min(depth / maxDepth, 1.0f)) * DEPTH_MAX);
+        long state = ((long) shader << 2 * ID_BITS) | ((long) id(texture) << ID_BITS) | id(mesh);
+        long key = pass == TRANSPARENT
+            ? ((DEPTH_MAX - quantized) << STATE_BITS) | state
+            : (state << DEPTH_BITS) | quantized;
+
+        if (count == keys.length) {
+            int capacity = count * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            sortedKeys = Arrays.copyOf(sortedKeys, capacity);
+            commands = Arrays.copyOf(commands, capacity);
+            sortedCommands = Arrays.copyOf(sortedCommands, capacity);
+        }
+        keys[count] = ((long) pass << 62) | key;
+        commands[count] = command;
+        count++;
+    }
+
+    private int id(Object object) {
+        if (object == null) {
+            return 0;
+        }
+        return ids.computeIfAbsent(object, key -> Math.min(ids.size() + 1, ID_MAX));
+    }
+
+    /**
+     * Sorts the queued commands by key, a byte at a time from the least significant; bytes all keys share are
+     * skipped. Commands with equal keys keep the order they were queued in.
+     */
+    void sort() {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[(int) (keys[i] >>> shift) & 0xFF]++;
+            }
+            if (count == 0 || counts[(int) (keys[0] >>> shift) & 0xFF] == count) {
+                continue;
+            }
+            for (int digit = 0, offset = 0; digit < counts.length; digit++) {
+                int digitCount = counts[digit];
+                counts[digit] = offset;
+                offset += digitCount;
+            }
+            for (int i = 0; i < count; i++) {
+                int target = counts[(int) (keys[i] >>> shift) & 0xFF]++;
+                sortedKeys[target] = keys[i];
+                sortedCommands[target] = commands[i];
+            }
+
+            long[] swapKeys = keys;
+            keys = sortedKeys;
+            sortedKeys = swapKeys;
+            Object[] swapCommands = commands;
+            commands = sortedCommands;
+            sortedCommands = swapCommands;
+        }
+        Arrays.fill(sortedCommands, 0, count, null);
+    }
+
+    int size() {
+        return count;
+    }
+
+    int pass(int index) {
+        return (int) (keys[index] >>> 62);
+    }
+
+    Object command(int index) {
+        return commands[index];
+    }
+}
@@ -1,25 +1,47 @@
 package com.sim3d.graphics;
 
+import com.sim3d.engine.Settings;
 import com.sim3d.graphics.primitives.PrimitiveFactory;
+import com.sim3d.loader.AssetHandle;
 import com.sim3d.loader.AssetManager;
+import com.sim3d.loader.Material;
 import com.sim3d.loader.Model;
 import com.sim3d.model.Environment;
 import com.sim3d.model.GameObject;
 import com.sim3d.model.Portal;
 import com.sim3d.model.Player;
 import com.sim3d.model.Transform;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix3f;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lwjgl.opengl.GL33.*;
 
 public class Renderer {
     private static final Logger logger = LoggerFactory.getLogger(Renderer.class);
+    // Bounding sphere radius relative to half the screen height below which models switch to simplified levels
+    private static final float LOD0_COVERAGE = 0.5f;
+    private static final int TEXTURE_ARRAY_UNIT = 1;
+    private static final Vector3f WHITE = new Vector3f(1.0f);
+    private static final Matrix4f IDENTITY = new Matrix4f();
+    private static final Matrix3f IDENTITY_NORMAL = new Matrix3f();
+    // Local bounds of the primitive meshes, as PrimitiveFactory builds them
+    private static final Vector3f[] CENTERED_BOUNDS = { new Vector3f(-0.5f), new Vector3f(0.5f) };
+    private static final Vector3f[] BASED_BOUNDS = { new Vector3f(-0.5f, 0, -0.5f), new Vector3f(0.5f, 1, 0.5f) };
+    private static final Map<String, Vector3f[]> PRIMITIVE_BOUNDS = Map.of(
+        "cube", CENTERED_BOUNDS, "sphere", CENTERED_BOUNDS, "cylinder", BASED_BOUNDS, "pyramid", BASED_BOUNDS);
     
     private ShaderProgram shaderProgram;
     private Camera camera;
@@ -27,7 +49,26 @@ public class Renderer {
     private Map<String, Mesh> primitiveMeshes;
     private Vector3f lightDirection;
     private AssetManager assetManager;
+    // Keeps the current environment's models resident; released when another environment is preloaded
+    private final List<AssetHandle<Model>> environmentModels = new ArrayList<>();
+    // Object textures of the current environment packed into texture arrays, and those of the next one while
+    // they load; objects whose textures are still being packed are drawn as primitives
+    private TextureLayers textureLayers;
+    private CompletableFuture<TextureLayers> pendingTextureLayers;
+    private Set<String> pendingTexturePaths = Set.of();
     private Texture grassTexture;
+    private int viewportHeight;
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final Matrix4f projectionView = new Matrix4f();
+    private final Matrix4f portalMatrix = new Matrix4f();
+    private final Matrix3f portalNormalMatrix = new Matrix3f();
+    // World bounds per object, kept until the object is gone
+    private final Map<GameObject, ObjectBounds> objectBounds = new WeakHashMap<>();
+    private int visibleObjects;
+    private int culledObjects;
+    private final InstanceBatcher batcher = new InstanceBatcher();
+    private int instanceBatches;
+    private final RenderQueue renderQueue = new RenderQueue();
 
     public Renderer() {
         this.camera = new Camera();
@@ -41,9 +82,9 @@ public class Renderer {
         
         shaderProgram = ShaderProgram.loadFromResources("shaders/vertex.glsl", "shaders/fragment.glsl");
 
-        glEnable(GL_DEPTH_TEST);
-        glEnable(GL_CULL_FACE);
-        glCullFace(GL_BACK);
+        GLState.setEnabled(GL_DEPTH_TEST, true);
+        GLState.setEnabled(GL_CULL_FACE, true);
+        GLState.cullFace(GL_BACK);
 
         primitiveMeshes.put("cube", PrimitiveFactory.createCube(new Vector3f(1, 1, 1)));
         primitiveMeshes.put("sphere", PrimitiveFactory.createSphere(new Vector3f(1, 1, 1), 16));
@@ -62,24 +103,33 @@ public class Renderer {
 
         shaderProgram.bind();
 
+        viewportHeight = windowHeight;
         float aspectRatio = (float) windowWidth / windowHeight;
         Matrix4f projectionMatrix = camera.getProjectionMatrix(aspectRatio);
         Matrix4f viewMatrix = camera.getViewMatrix();
 
+        frustum.set(projectionMatrix.mul(viewMatrix, projectionView));
+        visibleObjects = 0;
+        culledObjects = 0;
+
         shaderProgram.setUniform("projection", projectionMatrix);
         shaderProgram.setUniform("view", viewMatrix);
         shaderProgram.setUniform("lightDirection", lightDirection);
         shaderProgram.setUniform("ambientStrength", 0.3f);
         shaderProgram.setUniform("textureSampler", 0);
+        shaderProgram.setUniform("textureArraySampler", TEXTURE_ARRAY_UNIT);
+        shaderProgram.setUniform("useTextureArray", false);
+        shaderProgram.setUniform("useInstancing", false);
 
         renderGroundPlane(environment);
 
+        swapTextureLayers();
+        batcher.begin();
         for (GameObject obj : environment.getObjects()) {
-            renderGameObject(obj);
+            queueGameObject(obj);
         }
-
-        // Render portals with transparency
-        renderPortals(environment);
+        buildRenderQueue(environment);
+        submitRenderQueue();
 
         shaderProgram.unbind();
     }
@@ -96,8 +146,8 @@ public class Renderer {
         float textureScale = 10.0f; // Texture will repeat every 10 units
         groundPlane = PrimitiveFactory.createTexturedPlane(bounds.x * 2, bounds.z * 2, groundColor, textureScale);
 
-        Matrix4f modelMatrix = new Matrix4f().identity();
-        shaderProgram.setUniform("model", modelMatrix);
+        shaderProgram.setUniform("model", IDENTITY);
+        shaderProgram.setUniform("normalMatrix", IDENTITY_NORMAL);
         shaderProgram.setUniform("objectColor", groundColor);
 
         // Load and bind grass texture
@@ -109,7 +159,6 @@ public class Renderer {
             grassTexture.bind(0);
             shaderProgram.setUniform("useTexture", true);
             groundPlane.render();
-            grassTexture.unbind();
         } else {
             // Fallback to untextured rendering if texture loading fails
             shaderProgram.setUniform("useTexture", false);
@@ -117,140 +166,342 @@ public class Renderer {
         }
     }
 
-    private void renderGameObject(GameObject obj) {
-        Transform transform = obj.getTransform();
-        Vector3f pos = transform.getPosition();
-        Vector3f rot = transform.getRotation();
-        Vector3f scale = transform.getScale();
-
-        Matrix4f modelMatrix = new Matrix4f()
-            .identity()
-            .translate(pos)
-            .rotateX((float) Math.toRadians(rot.x))
-            .rotateY((float) Math.toRadians(rot.y))
-            .rotateZ((float) Math.toRadians(rot.z))
-            .scale(scale);
-
-        shaderProgram.setUniform("model", modelMatrix);
-        shaderProgram.setUniform("objectColor", obj.getColor());
+    /**
+     * Adds a visible object to the instance batch of whatever it is drawn with.
+     */
+    private void queueGameObject(GameObject obj) {
+        if (!isVisible(obj)) {
+            culledObjects++;
+            return;
+        }
+        visibleObjects++;
 
+        float depth = obj.getTransform().getPosition().distance(camera.getPosition());
         if (obj.hasCustomModel()) {
-            renderCustomModel(obj);
+            queueCustomModel(obj, depth);
         } else {
-            renderPrimitive(obj);
+            queuePrimitive(obj, depth);
         }
     }
 
-    private void renderCustomModel(GameObject obj) {
-        String modelPath = obj.getModelPath();
-        Model model = assetManager.getModel(modelPath);
-        
-        if (model != null) {
-            // Handle texture binding
-            boolean useTexture = false;
-            Texture texture = null;
-            if (model.hasTexture()) {
-                texture = model.getTexture();
-                if (texture != null) {
-                    texture.bind(0);
-                    useTexture = true;
-                }
+    /**
+     * Tests the object's world bounds against the view frustum: those of its model once loaded, else those of the
+     * primitive drawn in its place.
+     */
+    private boolean isVisible(GameObject obj) {
+        if (!Settings.getInstance().getDisplay().frustumCulling) {
+            return true;
+        }
+        Model model = obj.hasCustomModel() ? assetManager.peekModel(obj.getModelPath(), obj.getTexturePath()) : null;
+        String primitive = obj.getModelType() != null ? obj.getModelType() : "cube";
+        Object source = model != null ? model : primitive;
+        ObjectBounds bounds = objectBounds.computeIfAbsent(obj, key -> new ObjectBounds());
+        if (!bounds.isCurrent(obj.getTransform(), source)) {
+            if (model != null) {
+                bounds.update(obj.getTransform(), model, model.getBoundingBoxMin(), model.getBoundingBoxMax());
+            } else {
+                Vector3f[] local = PRIMITIVE_BOUNDS.getOrDefault(primitive, CENTERED_BOUNDS);
+                bounds.update(obj.getTransform(), source, local[0], local[1]);
             }
-            
-            shaderProgram.setUniform("useTexture", useTexture);
-            model.render(useTexture);
-            
-            if (useTexture && texture != null) {
-                texture.unbind();
+        }
+        return bounds.intersects(frustum);
+    }
+
+    /**
+     * Objects drawn in the last frame.
+     */
+    public int getVisibleObjects() {
+        return visibleObjects;
+    }
+
+    /**
+     * Objects skipped in the last frame because they were outside the view frustum.
+     */
+    public int getCulledObjects() {
+        return culledObjects;
+    }
+
+    /**
+     * Instanced draws the objects of the last frame were grouped into.
+     */
+    public int getInstanceBatches() {
+        return instanceBatches;
+    }
+
+    private void queueCustomModel(GameObject obj, float depth) {
+        String texturePath = obj.getTexturePath();
+        TextureLayers.Layer layer = textureLayers != null ? textureLayers.get(texturePath) : null;
+        if (layer == null && texturePath != null && pendingTexturePaths.contains(texturePath)) {
+            queuePrimitive(obj, depth);
+            return;
+        }
+
+        // Until the model has loaded in the background the object is drawn as its primitive model type. Models
+        // textured from an array layer are shared by all objects using them, whatever their texture.
+        Model model = null;
+        if (layer != null) {
+            model = assetManager.getModelIfReady(obj.getModelPath(), null);
+            if (model != null && model.hasMaterials()) {
+                layer = null;
             }
+        }
+        if (layer == null) {
+            model = assetManager.getModelIfReady(obj.getModelPath(), texturePath);
+        }
+        int lod = 0;
+        if (model != null) {
+            float coverage = screenCoverage(model, obj.getTransform());
+            lod = selectLod(model, coverage);
+            requestTextureDetail(model, coverage);
+        }
+        
+        if (model == null) {
+            queuePrimitive(obj, depth);
+        } else if (layer != null) {
+            queueInstance(new InstanceBatcher.Key(model, lod, null, layer.array(), false), obj, layer.layer(), depth);
+        } else if (model.hasMaterials()) {
+            queueInstance(new InstanceBatcher.Key(model, lod, null, null, true), obj, 0, depth);
         } else {
-            renderPrimitive(obj);
+            queueInstance(new InstanceBatcher.Key(model, lod, model.getTexture(), null, false), obj, 0, depth);
         }
     }
 
-    private void renderPrimitive(GameObject obj) {
-        String modelType = obj.getModelType();
-        Mesh mesh = primitiveMeshes.get(modelType);
-
+    private void queuePrimitive(GameObject obj, float depth) {
+        Mesh mesh = primitiveMeshes.get(obj.getModelType());
         if (mesh == null) {
             mesh = primitiveMeshes.get("cube");
         }
+        queueInstance(new InstanceBatcher.Key(mesh, 0, null, null, false), obj, 0, depth);
+    }
+
+    /**
+     * Adds the object with its cached world and normal matrices, which are only rebuilt after it moved.
+     */
+    private void queueInstance(InstanceBatcher.Key key, GameObject obj, float layer, float depth) {
+        Transform transform = obj.getTransform();
+        batcher.add(key, transform.getWorldMatrix(), transform.getNormalMatrix(), obj.getColor(), layer, depth);
+    }
+
+    /**
+     * Uploads the frame's instance batches and queues them with the portals. Batches are placed by their nearest
+     * instance when opaque and by their farthest when translucent.
+     */
+    private void buildRenderQueue(Environment environment) {
+        List<InstanceBatcher.Batch> batches = batcher.upload();
+        instanceBatches = batches.size();
+        renderQueue.begin(camera.getFarPlane());
+
+        for (InstanceBatcher.Batch batch : batches) {
+            InstanceBatcher.Key key = batch.key;
+            Object texture = key.array() != null ? key.array() : key.texture();
+            if (key.materials() && ((Model) key.drawable()).isTransparent()) {
+                renderQueue.add(RenderQueue.TRANSPARENT, 0, texture, key.drawable(), batch.farthest(), batch);
+            } else {
+                renderQueue.add(RenderQueue.OPAQUE, 0, texture, key.drawable(), batch.nearest(), batch);
+            }
+        }
+        Mesh portalMesh = primitiveMeshes.get("cube");
+        for (Portal portal : environment.getPortals()) {
+            float depth = portal.getTransform().getPosition().distance(camera.getPosition());
+            renderQueue.add(RenderQueue.TRANSPARENT, 0, null, portalMesh, depth, portal);
+        }
+        renderQueue.sort();
+    }
 
-        if (mesh != null) {
+    /**
+     * Draws the sorted queue. Consecutive draws mostly share state, and {@link GLState} and the shader's uniform
+     * cache drop the binds and uniform updates that repeat it.
+     */
+    private void submitRenderQueue() {
+        for (int i = 0; i < renderQueue.size(); i++) {
+            Object command = renderQueue.command(i);
+            if (command instanceof Portal portal) {
+                renderPortal(portal);
+            } else {
+                renderBatch((InstanceBatcher.Batch) command, renderQueue.pass(i));
+            }
+        }
+
+        GLState.setEnabled(GL_BLEND, false);
+        GLState.depthMask(true);
+        shaderProgram.setUniform("useInstancing", false);
+    }
+
+    /**
+     * Draws a batch with one instanced draw per mesh. Object colours come from the instances, so the uniform
+     * colour is white. Translucent batches leave depth unwritten, as their instances are not sorted among
+     * themselves.
+     */
+    private void renderBatch(InstanceBatcher.Batch batch, int pass) {
+        InstanceBatcher.Key key = batch.key;
+        InstanceBuffer instances = batcher.getInstances();
+        GLState.depthMask(pass == RenderQueue.OPAQUE);
+        shaderProgram.setUniform("useInstancing", true);
+        shaderProgram.setUniform("objectColor", WHITE);
+        if (key.drawable() instanceof Mesh mesh) {
             // Primitives don't use textures and don't have texture coordinates
             shaderProgram.setUniform("useTexture", false);
-            mesh.render();
+            mesh.renderInstanced(0, instances, batch.first(), batch.count());
+            return;
+        }
+
+        Model model = (Model) key.drawable();
+        if (key.array() != null) {
+            // The layer of each object comes with its instance data
+            key.array().bind(TEXTURE_ARRAY_UNIT);
+            shaderProgram.setUniform("useTexture", true);
+            shaderProgram.setUniform("useTextureArray", true);
+            model.renderInstanced(true, key.lod(), instances, batch.first(), batch.count());
+            shaderProgram.setUniform("useTextureArray", false);
+        } else if (key.materials()) {
+            // The model sets colours, textures and blending per material
+            GLState.setEnabled(GL_BLEND, false);
+            model.renderInstanced(shaderProgram, key.lod(), instances, batch.first(), batch.count());
+        } else {
+            Texture texture = key.texture();
+            if (texture != null) {
+                texture.bind(0);
+            }
+            shaderProgram.setUniform("useTexture", texture != null);
+            model.renderInstanced(texture != null, key.lod(), instances, batch.first(), batch.count());
         }
     }
 
-    private void renderPortals(Environment environment) {
-        // Enable blending for transparency
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
-        
-        // Disable depth writing but keep depth testing for proper transparency
-        glDepthMask(false);
-        
-        for (Portal portal : environment.getPortals()) {
-            renderPortal(portal);
+    /**
+     * Switches to the texture arrays of the preloaded environment once they are built.
+     */
+    private void swapTextureLayers() {
+        if (pendingTextureLayers == null || !pendingTextureLayers.isDone()) {
+            return;
         }
-        
-        // Restore depth writing
-        glDepthMask(true);
-        
-        // Disable blending
-        glDisable(GL_BLEND);
+        TextureLayers layers = pendingTextureLayers.exceptionally(error -> {
+            logger.warn("Failed to pack environment textures", error);
+            return null;
+        }).join();
+        pendingTextureLayers = null;
+        pendingTexturePaths = Set.of();
+        if (textureLayers != null) {
+            textureLayers.cleanup();
+        }
+        textureLayers = layers;
     }
 
-    private void renderPortal(Portal portal) {
-        Vector3f position = portal.getTransform().getPosition();
-        Vector3f triggerSize = portal.getTriggerSize();
-        Vector3f color = portal.getColor();
-        float transparency = portal.getTransparency();
+    /**
+     * The model's bounding sphere radius relative to half the screen height, or infinity with the camera inside it.
+     */
+    private float screenCoverage(Model model, Transform transform) {
+        Vector3f center = transform.getWorldMatrix().transformPosition(model.getBoundingBoxCenter());
+        float radius = model.getBoundingBoxSize().mul(transform.getScale()).length() * 0.5f;
+        float distance = center.distance(camera.getPosition());
+        if (distance <= radius) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float halfHeight = distance * (float) Math.tan(Math.toRadians(camera.getFov()) * 0.5);
+        return radius / halfHeight;
+    }
 
-        // Create a box mesh for the portal trigger zone
-        Mesh portalMesh = PrimitiveFactory.createCube(triggerSize);
-        
-        Matrix4f modelMatrix = new Matrix4f()
-            .identity()
-            .translate(position)
-            .scale(triggerSize);
+    /**
+     * Picks a level of detail from the share of the screen height the model's bounding sphere covers: full detail
+     * while it spans at least half the screen, then one level coarser each time the covered height halves.
+     */
+    private int selectLod(Model model, float screenCoverage) {
+        int lodCount = model.getLodCount();
+        if (lodCount <= 1) {
+            return 0;
+        }
+        float coverage = screenCoverage * Settings.getInstance().getModels().lodBias;
+        if (coverage >= LOD0_COVERAGE) {
+            return 0;
+        }
+        int lod = (int) Math.floor(Math.log(LOD0_COVERAGE / coverage) / Math.log(2.0));
+        return Math.min(lod, lodCount - 1);
+    }
 
-        shaderProgram.setUniform("model", modelMatrix);
-        
-        // Set color with transparency
-        Vector3f colorWithAlpha = new Vector3f(color.x, color.y, color.z);
-        shaderProgram.setUniform("objectColor", colorWithAlpha);
+    /**
+     * Tells the texture streamer how many pixels the model's textures span on screen, so their finer mip levels
+     * are streamed in as it comes closer.
+     */
+    private void requestTextureDetail(Model model, float screenCoverage) {
+        TextureStreamer streamer = assetManager.getTextureStreamer();
+        float pixels = screenCoverage * viewportHeight;
+        if (model.getTexture() != null) {
+            streamer.requestCoverage(model.getTexture(), pixels);
+        }
+        for (Material material : model.getMaterials()) {
+            if (material != null && material.getDiffuseTexture() != null) {
+                streamer.requestCoverage(material.getDiffuseTexture(), pixels);
+            }
+        }
+    }
+
+    /**
+     * Draws a portal's trigger zone as a translucent box, tested against but not written to the depth buffer.
+     */
+    private void renderPortal(Portal portal) {
+        portalMatrix.translation(portal.getTransform().getPosition())
+            .scale(portal.getTriggerSize())
+            .normal(portalNormalMatrix);
+
+        GLState.setEnabled(GL_BLEND, true);
+        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        GLState.depthMask(false);
+        shaderProgram.setUniform("useInstancing", false);
         shaderProgram.setUniform("useTexture", false);
-        
-        // Set a special uniform to indicate this is a transparent object
-        // We'll need to modify the fragment shader to handle this
+        shaderProgram.setUniform("model", portalMatrix);
+        shaderProgram.setUniform("normalMatrix", portalNormalMatrix);
+        shaderProgram.setUniform("objectColor", portal.getColor());
         shaderProgram.setUniform("isTransparent", true);
-        shaderProgram.setUniform("transparency", transparency);
-        
-        portalMesh.render();
-        
-        // Reset transparency flag
+        shaderProgram.setUniform("transparency", portal.getTransparency());
+
+        primitiveMeshes.get("cube").render();
+
         shaderProgram.setUniform("isTransparent", false);
-        
-        // Clean up the temporary mesh
-        portalMesh.cleanup();
     }
 
+    /**
+     * Starts loading the environment's models and their textures in the background; they are uploaded over the
+     * following frames by {@link #processAssetUploads()} and stay resident until another environment is preloaded.
+     */
     public void preloadModels(Environment environment) {
         logger.info("Preloading models for environment: {}", environment.getName());
         
+        // Acquire the new handles before releasing the old ones, so models shared by both stay resident
+        List<AssetHandle<Model>> previous = new ArrayList<>(environmentModels);
+        environmentModels.clear();
+        boolean textureArrays = Settings.getInstance().getAssets().textureArrays;
+        Set<String> texturePaths = new HashSet<>();
         for (GameObject obj : environment.getObjects()) {
-            if (obj.hasCustomModel()) {
-                String modelPath = obj.getModelPath();
-                String texturePath = obj.getTexturePath();
-                
-                if (!assetManager.hasModel(modelPath)) {
-                    assetManager.loadModel(modelPath, texturePath);
-                }
-                // Note: Texture is loaded automatically by loadModel() when texturePath is provided
+            if (!obj.hasCustomModel()) {
+                continue;
             }
+            String texturePath = obj.getTexturePath();
+            if (textureArrays && texturePath != null && !texturePath.isEmpty()) {
+                // The texture comes from an array layer, so the untextured model is shared
+                texturePaths.add(texturePath);
+                texturePath = null;
+            }
+            environmentModels.add(assetManager.acquireModel(obj.getModelPath(), texturePath));
+        }
+        previous.forEach(AssetHandle::release);
+
+        // A superseded build is freed once done; an empty one frees the current arrays at the next swap
+        if (pendingTextureLayers != null) {
+            pendingTextureLayers.thenAccept(layers -> {
+                if (layers != null) {
+                    layers.cleanup();
+                }
+            });
         }
+        pendingTexturePaths = texturePaths;
+        pendingTextureLayers = texturePaths.isEmpty() ? CompletableFuture.completedFuture(null)
+            : assetManager.requestTextureArrays(texturePaths);
+    }
+
+    /**
+     * Creates GL objects for background-loaded assets within the per-frame upload budget. Call once per frame.
+     */
+    public void processAssetUploads() {
+        assetManager.processUploads();
     }
 
     public void cleanup() {
@@ -265,11 +516,17 @@ public class Renderer {
         if (grassTexture != null) {
             grassTexture.cleanup();
         }
+        if (textureLayers != null) {
+            textureLayers.cleanup();
+        }
         for (Mesh mesh : primitiveMeshes.values()) {
             mesh.cleanup();
         }
         primitiveMeshes.clear();
+        batcher.cleanup();
         
+        environmentModels.forEach(AssetHandle::release);
+        environmentModels.clear();
         assetManager.cleanup();
         
         logger.info("Renderer cleanup complete");
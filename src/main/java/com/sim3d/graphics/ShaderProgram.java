@@ -1,16 +1,16 @@
 package com.sim3d.graphics;
 
-import org.joml.Matrix4f;
+import com.sim3d.loader.AssetBytes;
+import com.sim3d.loader.AssetPack;
+import org.joml.Matrix3fc;
+import org.joml.Matrix4fc;
 import org.joml.Vector3f;
 import org.lwjgl.system.MemoryStack;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import static org.lwjgl.opengl.GL33.*;
 
@@ -19,6 +19,9 @@ public class ShaderProgram {
     private int vertexShaderId;
     private int fragmentShaderId;
     private final Map<String, Integer> uniformLocations = new HashMap<>();
+    // Last values set per uniform location, up to three components, so repeated values are not sent again
+    private float[] uniformValues = new float[0];
+    private boolean[] uniformSet = new boolean[0];
 
     public ShaderProgram(String vertexCode, String fragmentCode) {
         programId = glCreateProgram();
@@ -53,15 +56,11 @@ public class ShaderProgram {
     }
 
     private static String loadResource(String path) {
-        try (InputStream is = ShaderProgram.class.getClassLoader().getResourceAsStream(path)) {
-            if (is == null) {
+        try (AssetBytes bytes = AssetPack.getInstance().read(path)) {
+            if (bytes == null) {
                 throw new RuntimeException("Resource not found: " + path);
             }
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-                return reader.lines().collect(Collectors.joining("\n"));
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load resource: " + path, e);
+            return bytes.asString();
         }
     }
 
@@ -82,11 +81,11 @@ public class ShaderProgram {
     }
 
     public void bind() {
-        glUseProgram(programId);
+        GLState.useProgram(programId);
     }
 
     public void unbind() {
-        glUseProgram(0);
+        GLState.useProgram(0);
     }
 
     public void cleanup() {
@@ -98,7 +97,7 @@ public class ShaderProgram {
             if (fragmentShaderId != 0) {
                 glDeleteShader(fragmentShaderId);
             }
-            glDeleteProgram(programId);
+            GLState.deleteProgram(programId);
         }
     }
 
@@ -112,7 +111,7 @@ public class ShaderProgram {
         });
     }
 
-    public void setUniform(String name, Matrix4f value) {
+    public void setUniform(String name, Matrix4fc value) {
         int location = getUniformLocation(name);
         if (location >= 0) {
             try (MemoryStack stack = MemoryStack.stackPush()) {
@@ -123,31 +122,58 @@ public class ShaderProgram {
         }
     }
 
-    public void setUniform(String name, Vector3f value) {
+    public void setUniform(String name, Matrix3fc value) {
         int location = getUniformLocation(name);
         if (location >= 0) {
+            try (MemoryStack stack = MemoryStack.stackPush()) {
+                FloatBuffer buffer = stack.mallocFloat(9);
+                value.get(buffer);
+                glUniformMatrix3fv(location, false, buffer);
+            }
+        }
+    }
+
+    public void setUniform(String name, Vector3f value) {
+        int location = getUniformLocation(name);
+        if (location >= 0 && changed(location, value.x, value.y, value.z)) {
             glUniform3f(location, value.x, value.y, value.z);
         }
     }
 
     public void setUniform(String name, float value) {
         int location = getUniformLocation(name);
-        if (location >= 0) {
+        if (location >= 0 && changed(location, value, 0, 0)) {
             glUniform1f(location, value);
         }
     }
 
     public void setUniform(String name, int value) {
         int location = getUniformLocation(name);
-        if (location >= 0) {
+        if (location >= 0 && changed(location, value, 0, 0)) {
             glUniform1i(location, value);
         }
     }
 
     public void setUniform(String name, boolean value) {
-        int location = getUniformLocation(name);
-        if (location >= 0) {
-            glUniform1i(location, value ? 1 : 0);
+        setUniform(name, value ? 1 : 0);
+    }
+
+    /**
+     * Records the value of the uniform at {@code location} and tells whether it differs from the last one set.
+     */
+    private boolean changed(int location, float x, float y, float z) {
+        if (location >= uniformSet.length) {
+            uniformSet = Arrays.copyOf(uniformSet, location + 1);
+            uniformValues = Arrays.copyOf(uniformValues, (location + 1) * 3);
         }
+        int offset = location * 3;
+        boolean unchanged = uniformSet[location] && uniformValues[offset] == x
+            && uniformValues[offset + 1] == y && uniformValues[offset + 2] == z;
+        GLState.countElided(unchanged);
+        uniformSet[location] = true;
+        uniformValues[offset] = x;
+        uniformValues[offset + 1] = y;
+        uniformValues[offset + 2] = z;
+        return !unchanged;
     }
 }
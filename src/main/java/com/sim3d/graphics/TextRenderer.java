@@ -1,5 +1,7 @@
 package com.sim3d.graphics;
 
+import com.sim3d.loader.AssetBytes;
+import com.sim3d.loader.AssetPack;
 import org.joml.Matrix4f;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.stb.STBTTAlignedQuad;
@@ -7,7 +9,6 @@ import org.lwjgl.stb.STBTTPackContext;
 import org.lwjgl.stb.STBTTPackedchar;
 import org.lwjgl.system.MemoryStack;
 
-import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 
@@ -18,6 +19,7 @@ public class TextRenderer {
     private ShaderProgram shaderProgram;
     private int vao, vbo;
     private int fontTexture;
+    private AssetBytes fontBytes;
     private ByteBuffer fontBuffer;
     private STBTTPackedchar.Buffer charData;
     
@@ -41,8 +43,8 @@ public class TextRenderer {
         vao = glGenVertexArrays();
         vbo = glGenBuffers();
         
-        glBindVertexArray(vao);
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        GLState.bindVertexArray(vao);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vbo);
         
         // Allocate buffer for a batch of quads (6 vertices per char, 4 floats per vertex)
         glBufferData(GL_ARRAY_BUFFER, 256 * 6 * 4 * Float.BYTES, GL_DYNAMIC_DRAW);
@@ -55,25 +57,24 @@ public class TextRenderer {
         glVertexAttribPointer(1, 2, GL_FLOAT, false, 4 * Float.BYTES, 2 * Float.BYTES);
         glEnableVertexAttribArray(1);
         
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, 0);
+        GLState.bindVertexArray(0);
     }
     
     private void loadFont() {
+        fontBytes = AssetPack.getInstance().read("Roboto.ttf");
+        if (fontBytes == null) {
+            throw new RuntimeException("Roboto.ttf not found in resources");
+        }
+
+        // STB keeps pointing into the font data, so a packed font is used in place and kept open
+        fontBuffer = fontBytes.buffer();
+        if (!fontBuffer.isDirect()) {
+            fontBuffer = BufferUtils.createByteBuffer(fontBytes.size()).put(fontBuffer).flip();
+        }
+
         try {
-            InputStream is = getClass().getClassLoader().getResourceAsStream("Roboto.ttf");
-            if (is == null) {
-                throw new RuntimeException("Roboto.ttf not found in resources");
-            }
-            
-            byte[] fontBytes = is.readAllBytes();
-            fontBuffer = BufferUtils.createByteBuffer(fontBytes.length);
-            fontBuffer.put(fontBytes);
-            fontBuffer.flip();
-            is.close();
-            
             createFontAtlas();
-            
         } catch (Exception e) {
             throw new RuntimeException("Font loading failed: " + e.getMessage(), e);
         }
@@ -100,24 +101,23 @@ public class TextRenderer {
         }
         
         fontTexture = glGenTextures();
-        glBindTexture(GL_TEXTURE_2D, fontTexture);
+        GLState.bindTexture(0, GL_TEXTURE_2D, fontTexture);
         glTexImage2D(GL_TEXTURE_2D, 0, GL_R8, BITMAP_WIDTH, BITMAP_HEIGHT, 0, GL_RED, GL_UNSIGNED_BYTE, bitmap);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-        glBindTexture(GL_TEXTURE_2D, 0);
     }
     
     public void renderText(String text, float x, float y, float scale, float[] color, int windowWidth, int windowHeight) {
         if (text == null || text.isEmpty()) return;
         
-        boolean depthTestEnabled = glIsEnabled(GL_DEPTH_TEST);
-        boolean cullFaceEnabled = glIsEnabled(GL_CULL_FACE);
-        boolean blendEnabled = glIsEnabled(GL_BLEND);
+        boolean depthTestEnabled = GLState.isEnabled(GL_DEPTH_TEST);
+        boolean cullFaceEnabled = GLState.isEnabled(GL_CULL_FACE);
+        boolean blendEnabled = GLState.isEnabled(GL_BLEND);
         
-        glDisable(GL_DEPTH_TEST);
-        glDisable(GL_CULL_FACE);
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        GLState.setEnabled(GL_DEPTH_TEST, false);
+        GLState.setEnabled(GL_CULL_FACE, false);
+        GLState.setEnabled(GL_BLEND, true);
+        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
         
         shaderProgram.bind();
         
@@ -126,11 +126,10 @@ public class TextRenderer {
         shaderProgram.setUniform("textColor", new org.joml.Vector3f(color[0], color[1], color[2]));
         shaderProgram.setUniform("useTexture", 1.0f);
         
-        glActiveTexture(GL_TEXTURE0);
-        glBindTexture(GL_TEXTURE_2D, fontTexture);
+        GLState.bindTexture(0, GL_TEXTURE_2D, fontTexture);
         shaderProgram.setUniform("textTexture", 0);
         
-        glBindVertexArray(vao);
+        GLState.bindVertexArray(vao);
         
         try (MemoryStack stack = MemoryStack.stackPush()) {
             FloatBuffer xPos = stack.floats(x);
@@ -183,21 +182,17 @@ public class TextRenderer {
             
             if (vertexCount > 0) {
                 vertexData.flip();
-                glBindBuffer(GL_ARRAY_BUFFER, vbo);
+                GLState.bindBuffer(GL_ARRAY_BUFFER, vbo);
                 glBufferSubData(GL_ARRAY_BUFFER, 0, vertexData);
-                glBindBuffer(GL_ARRAY_BUFFER, 0);
                 
                 glDrawArrays(GL_TRIANGLES, 0, vertexCount);
             }
         }
         
-        glBindVertexArray(0);
-        glBindTexture(GL_TEXTURE_2D, 0);
-        shaderProgram.unbind();
-        
-        if (!blendEnabled) glDisable(GL_BLEND);
-        if (depthTestEnabled) glEnable(GL_DEPTH_TEST);
-        if (cullFaceEnabled) glEnable(GL_CULL_FACE);
+
+        if (!blendEnabled) GLState.setEnabled(GL_BLEND, false);
+        if (depthTestEnabled) GLState.setEnabled(GL_DEPTH_TEST, true);
+        if (cullFaceEnabled) GLState.setEnabled(GL_CULL_FACE, true);
     }
     
     public float getTextWidth(String text, float scale) {
@@ -232,16 +227,19 @@ public class TextRenderer {
             shaderProgram.cleanup();
         }
         if (vao != 0) {
-            glDeleteVertexArrays(vao);
+            GLState.deleteVertexArray(vao);
         }
         if (vbo != 0) {
-            glDeleteBuffers(vbo);
+            GLState.deleteBuffer(vbo);
         }
         if (fontTexture != 0) {
-            glDeleteTextures(fontTexture);
+            GLState.deleteTexture(fontTexture);
         }
         if (charData != null) {
             charData.free();
         }
+        if (fontBytes != null) {
+            fontBytes.close();
+        }
     }
 }
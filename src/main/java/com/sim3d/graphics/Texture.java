@@ -1,6 +1,10 @@
 package com.sim3d.graphics;
 
+import com.sim3d.loader.NativeBufferPool;
+import org.lwjgl.opengl.GL;
+
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import static org.lwjgl.opengl.GL33.*;
 
@@ -9,6 +13,13 @@ public class Texture {
     private final int width;
     private final int height;
     private final String path;
+    private final int levels;
+    private final TextureFormat storedFormat;
+    // Finest level sampled and finest level with storage; coarser only while mip levels are streamed in
+    private int baseLevel;
+    private int allocatedLevel;
+    private long gpuBytes;
+    private boolean deleted;
 
     public Texture(int width, int height, ByteBuffer data, String path) {
         this(width, height, data, path, 4); // Default to 4 channels (RGBA)
@@ -18,9 +29,11 @@ public class Texture {
         this.path = path;
         this.width = width;
         this.height = height;
+        this.levels = 1;
+        this.storedFormat = TextureFormat.RGBA8;
         this.textureId = glGenTextures();
         
-        glBindTexture(GL_TEXTURE_2D, textureId);
+        GLState.bindTexture(0, GL_TEXTURE_2D, textureId);
         
         // Set texture parameters
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
@@ -42,22 +55,205 @@ public class Texture {
         // Upload texture data
         glTexImage2D(GL_TEXTURE_2D, 0, internalFormat, width, height, 0, format, GL_UNSIGNED_BYTE, data);
         glGenerateMipmap(GL_TEXTURE_2D);
+        // The mip chain adds a third on top of the base level
+        this.gpuBytes = (long) width * height * channels * 4 / 3;
         
         // Unbind texture
-        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    /**
+     * Creates a texture from a precomputed mip chain, largest level first. Block-compressed levels are uploaded as
+     * they are, or decoded to RGBA8 first if the driver lacks S3TC support.
+     */
+    public Texture(int width, int height, TextureFormat format, List<ByteBuffer> levels, String path) {
+        this(width, height, format, levels.size(), path);
+        GLState.bindTexture(0, GL_TEXTURE_2D, textureId);
+        for (int level = 0; level < levels.size(); level++) {
+            int levelWidth = TextureFormat.levelSize(width, level);
+            int levelHeight = TextureFormat.levelSize(height, level);
+            if (storedFormat != format) {
+                ByteBuffer rgba = decompress(format, levels.get(level), levelWidth, levelHeight);
+                glTexSubImage2D(GL_TEXTURE_2D, level, 0, 0, levelWidth, levelHeight, GL_RGBA, GL_UNSIGNED_BYTE,
+                    rgba);
+                NativeBufferPool.release(rgba);
+            } else if (format.isCompressed()) {
+                glCompressedTexSubImage2D(GL_TEXTURE_2D, level, 0, 0, levelWidth, levelHeight,
+                    format.glInternalFormat(), levels.get(level));
+            } else {
+                glTexSubImage2D(GL_TEXTURE_2D, level, 0, 0, levelWidth, levelHeight, GL_RGBA, GL_UNSIGNED_BYTE,
+                    levels.get(level));
+            }
+        }
+        generateMipmaps();
+    }
+
+    /**
+     * Allocates storage for {@code levels} mip levels without filling it, for {@link TextureStreamer} to upload
+     * into. With a single level, {@link #finishUpload()} generates the rest of the chain.
+     */
+    Texture(int width, int height, TextureFormat format, int levels, String path) {
+        this(width, height, format, levels, 0, path);
+    }
+
+    /**
+     * As {@link #Texture(int, int, TextureFormat, int, String)}, but only allocates the levels from
+     * {@code firstLevel} on and samples from there; finer levels are added by {@link #allocateLevel(int)}.
+     */
+    Texture(int width, int height, TextureFormat format, int levels, int firstLevel, String path) {
+        this.path = path;
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+        this.storedFormat = format.isCompressed() && !supportsCompression() ? TextureFormat.RGBA8 : format;
+        this.textureId = glGenTextures();
+
+        GLState.bindTexture(0, GL_TEXTURE_2D, textureId);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        if (levels > 1) {
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_BASE_LEVEL, firstLevel);
+            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, levels - 1);
+        }
+
+        this.baseLevel = firstLevel;
+        this.allocatedLevel = levels;
+        for (int level = levels - 1; level >= firstLevel; level--) {
+            allocateStorage(level);
+        }
+        if (levels == 1) {
+            // The generated mip chain adds a third on top of the base level
+            gpuBytes = gpuBytes * 4 / 3;
+        }
+    }
+
+    /**
+     * Allocates the storage of a level finer than any allocated so far, leaving its contents undefined until
+     * uploaded. It is only sampled once {@link #setBaseLevel(int)} reaches it.
+     */
+    void allocateLevel(int level) {
+        allocateStorage(level);
+    }
+
+    private void allocateStorage(int level) {
+        int levelWidth = TextureFormat.levelSize(width, level);
+        int levelHeight = TextureFormat.levelSize(height, level);
+        int levelBytes = storedFormat.levelBytes(levelWidth, levelHeight);
+        GLState.bindTexture(0, GL_TEXTURE_2D, textureId);
+        if (storedFormat.isCompressed()) {
+            glCompressedTexImage2D(GL_TEXTURE_2D, level, storedFormat.glInternalFormat(), levelWidth, levelHeight, 0,
+                levelBytes, 0L);
+        } else {
+            glTexImage2D(GL_TEXTURE_2D, level, GL_RGBA, levelWidth, levelHeight, 0, GL_RGBA, GL_UNSIGNED_BYTE,
+                (ByteBuffer) null);
+        }
+        allocatedLevel = Math.min(allocatedLevel, level);
+        gpuBytes += levelBytes;
+    }
+
+    /**
+     * Makes {@code level} the finest level sampled; it and every coarser level must be uploaded.
+     */
+    void setBaseLevel(int level) {
+        GLState.bindTexture(0, GL_TEXTURE_2D, textureId);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_BASE_LEVEL, level);
+        baseLevel = level;
+    }
+
+    /**
+     * Stops sampling the levels finer than {@code level} and frees their storage. Returns the bytes freed.
+     */
+    long dropLevels(int level) {
+        setBaseLevel(level);
+        long freed = 0;
+        GLState.bindTexture(0, GL_TEXTURE_2D, textureId);
+        for (int dropped = allocatedLevel; dropped < level; dropped++) {
+            // Levels below the base level do not count towards completeness, so an empty image frees them
+            glTexImage2D(GL_TEXTURE_2D, dropped, GL_RGBA, 0, 0, 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+            freed += storedFormat.levelBytes(TextureFormat.levelSize(width, dropped),
+                TextureFormat.levelSize(height, dropped));
+        }
+        allocatedLevel = Math.max(allocatedLevel, level);
+        gpuBytes -= freed;
+        return freed;
+    }
+
+    int getBaseLevel() {
+        return baseLevel;
+    }
+
+    int getLevelCount() {
+        return levels;
+    }
+
+    boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Uploads rows {@code y} to {@code y + rows} of a level from the bound pixel unpack buffer at {@code offset}.
+     * For block-compressed textures, {@code y} is a multiple of four and {@code bytes} covers whole block rows.
+     */
+    void upload(int level, int y, int rows, int bytes, long offset) {
+        int levelWidth = TextureFormat.levelSize(width, level);
+        GLState.bindTexture(0, GL_TEXTURE_2D, textureId);
+        if (storedFormat.isCompressed()) {
+            glCompressedTexSubImage2D(GL_TEXTURE_2D, level, 0, y, levelWidth, rows, storedFormat.glInternalFormat(),
+                bytes, offset);
+        } else {
+            glTexSubImage2D(GL_TEXTURE_2D, level, 0, y, levelWidth, rows, GL_RGBA, GL_UNSIGNED_BYTE, offset);
+        }
+    }
+
+    /**
+     * Generates the mip chain of a single-level texture once its pixels are uploaded.
+     */
+    void finishUpload() {
+        generateMipmaps();
+    }
+
+    private void generateMipmaps() {
+        if (levels == 1) {
+            GLState.bindTexture(0, GL_TEXTURE_2D, textureId);
+            glGenerateMipmap(GL_TEXTURE_2D);
+        }
+    }
+
+    /**
+     * The format the GL texture holds, which is RGBA8 for compressed data the driver cannot take.
+     */
+    TextureFormat getStoredFormat() {
+        return storedFormat;
+    }
+
+    static boolean supportsCompression() {
+        return GL.getCapabilities().GL_EXT_texture_compression_s3tc;
+    }
+
+    /**
+     * Decodes a block-compressed level into a pooled RGBA8 buffer, which the caller releases.
+     */
+    static ByteBuffer decompress(TextureFormat format, ByteBuffer blocks, int width, int height) {
+        ByteBuffer rgba = NativeBufferPool.acquire(width * height * 4);
+        BlockCompressor.decode(format, blocks, width, height, rgba);
+        return rgba;
     }
 
     public void bind(int textureUnit) {
-        glActiveTexture(GL_TEXTURE0 + textureUnit);
-        glBindTexture(GL_TEXTURE_2D, textureId);
+        GLState.bindTexture(textureUnit, GL_TEXTURE_2D, textureId);
     }
 
+    /**
+     * Unbinds unit 0. Not needed between draws, as binding the next texture replaces this one.
+     */
     public void unbind() {
-        glBindTexture(GL_TEXTURE_2D, 0);
+        GLState.bindTexture(0, GL_TEXTURE_2D, 0);
     }
 
     public void cleanup() {
-        glDeleteTextures(textureId);
+        GLState.deleteTexture(textureId);
+        deleted = true;
     }
 
     public int getTextureId() {
@@ -72,6 +268,10 @@ public class Texture {
         return height;
     }
 
+    public long getGpuBytes() {
+        return gpuBytes;
+    }
+
     public String getPath() {
         return path;
     }
@@ -0,0 +1,157 @@
+package com.sim3d.graphics;
+
+import com.sim3d.loader.NativeBufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * A {@code GL_TEXTURE_2D_ARRAY} whose layers all share one size, format and mip chain, so objects using different
+ * layers can be drawn without switching textures. Built by {@link TextureArrayBuilder}.
+ */
+public class TextureArray {
+    private final int textureId;
+    private final int width;
+    private final int height;
+    private final int layers;
+    private final int levels;
+    private final TextureFormat format;
+    // Compressed layers are decoded to RGBA8 on upload when the driver lacks S3TC support
+    private final boolean decompress;
+    private volatile long gpuBytes;
+
+    /**
+     * Allocates {@code levels} mip levels; with a single one, the rest of the chain is generated by
+     * {@link #generateMipmaps()} once all layers are uploaded.
+     */
+    TextureArray(int width, int height, int layers, TextureFormat format, int levels) {
+        this.width = width;
+        this.height = height;
+        this.layers = layers;
+        this.levels = levels;
+        this.format = format;
+        this.decompress = format.isCompressed() && !Texture.supportsCompression();
+        this.textureId = glGenTextures();
+
+        GLState.bindTexture(0, GL_TEXTURE_2D_ARRAY, textureId);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        long bytes = 0;
+        for (int level = 0; level < levels; level++) {
+            int levelWidth = TextureFormat.levelSize(width, level);
+            int levelHeight = TextureFormat.levelSize(height, level);
+            if (format.isCompressed() && !decompress) {
+                int levelBytes = format.levelBytes(levelWidth, levelHeight) * layers;
+                glCompressedTexImage3D(GL_TEXTURE_2D_ARRAY, level, format.glInternalFormat(), levelWidth,
+                    levelHeight, layers, 0, levelBytes, 0L);
+                bytes += levelBytes;
+            } else {
+                glTexImage3D(GL_TEXTURE_2D_ARRAY, level, GL_RGBA, levelWidth, levelHeight, layers, 0, GL_RGBA,
+                    GL_UNSIGNED_BYTE, (ByteBuffer) null);
+                bytes += (long) levelWidth * levelHeight * layers * 4;
+            }
+        }
+        if (levels == 1) {
+            // The generated mip chain adds a third on top of the base level
+            bytes = bytes * 4 / 3;
+        } else {
+            glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAX_LEVEL, levels - 1);
+        }
+        this.gpuBytes = bytes;
+    }
+
+    /**
+     * Uploads rows {@code y} to {@code y + rows} of one level of a layer from the bound pixel unpack buffer at
+     * {@code offset}, in the format given by {@link #getStoredFormat()}.
+     */
+    void upload(int layer, int level, int y, int rows, int bytes, long offset) {
+        int levelWidth = TextureFormat.levelSize(width, level);
+        GLState.bindTexture(0, GL_TEXTURE_2D_ARRAY, textureId);
+        if (format.isCompressed() && !decompress) {
+            glCompressedTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, y, layer, levelWidth, rows, 1,
+                format.glInternalFormat(), bytes, offset);
+        } else {
+            glTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, y, layer, levelWidth, rows, 1, GL_RGBA, GL_UNSIGNED_BYTE,
+                offset);
+        }
+    }
+
+    /**
+     * The format the GL texture holds, which is RGBA8 for compressed data the driver cannot take.
+     */
+    TextureFormat getStoredFormat() {
+        return decompress ? TextureFormat.RGBA8 : format;
+    }
+
+    /**
+     * Uploads the mip levels of one layer, largest first, in the array's format.
+     */
+    void upload(int layer, List<ByteBuffer> data) {
+        GLState.bindTexture(0, GL_TEXTURE_2D_ARRAY, textureId);
+        for (int level = 0; level < levels; level++) {
+            int levelWidth = TextureFormat.levelSize(width, level);
+            int levelHeight = TextureFormat.levelSize(height, level);
+            ByteBuffer pixels = data.get(level);
+            if (decompress) {
+                ByteBuffer rgba = Texture.decompress(format, pixels, levelWidth, levelHeight);
+                glTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, 0, layer, levelWidth, levelHeight, 1, GL_RGBA,
+                    GL_UNSIGNED_BYTE, rgba);
+                NativeBufferPool.release(rgba);
+            } else if (format.isCompressed()) {
+                glCompressedTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, 0, layer, levelWidth, levelHeight, 1,
+                    format.glInternalFormat(), pixels);
+            } else {
+                glTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, 0, layer, levelWidth, levelHeight, 1, GL_RGBA,
+                    GL_UNSIGNED_BYTE, pixels);
+            }
+        }
+    }
+
+    void generateMipmaps() {
+        GLState.bindTexture(0, GL_TEXTURE_2D_ARRAY, textureId);
+        glGenerateMipmap(GL_TEXTURE_2D_ARRAY);
+    }
+
+    /**
+     * Binds the array to {@code textureUnit} and makes unit 0 active again, as the rest of the renderer expects.
+     */
+    public void bind(int textureUnit) {
+        GLState.bindTexture(textureUnit, GL_TEXTURE_2D_ARRAY, textureId);
+    }
+
+    public static void unbind(int textureUnit) {
+        GLState.bindTexture(textureUnit, GL_TEXTURE_2D_ARRAY, 0);
+    }
+
+    public void cleanup() {
+        GLState.deleteTexture(textureId);
+        gpuBytes = 0;
+    }
+
+    public int getTextureId() {
+        return textureId;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLayers() {
+        return layers;
+    }
+
+    /**
+     * GPU bytes of all layers and levels, or 0 once cleaned up.
+     */
+    public long getGpuBytes() {
+        return gpuBytes;
+    }
+}
@@ -0,0 +1,137 @@
+package com.sim3d.graphics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * Packs decoded textures into texture arrays. Textures are grouped by size, format and mip levels, and each group fills
+ * as many arrays as the layer limit requires. Textures larger than the size limit are not grouped but get a
+ * single-layer array of their own, so every added texture can be looked up the same way.
+ */
+public final class TextureArrayBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(TextureArrayBuilder.class);
+
+    private final Map<String, TextureData> textures = new LinkedHashMap<>();
+    private final int maxGroupedSize;
+    private Consumer<TextureArray> allocationListener = array -> {};
+
+    private record Format(int width, int height, TextureFormat format, int levels) {}
+
+    /**
+     * @param maxGroupedSize largest width or height of textures that are grouped with others
+     */
+    public TextureArrayBuilder(int maxGroupedSize) {
+        this.maxGroupedSize = maxGroupedSize;
+    }
+
+    /**
+     * Called on the render thread for every array as soon as its storage is allocated, before its layers are
+     * uploaded.
+     */
+    public void setAllocationListener(Consumer<TextureArray> listener) {
+        this.allocationListener = listener;
+    }
+
+    /**
+     * Adds decoded pixels; the builder frees them once built. A second texture with the same path replaces the
+     * first.
+     */
+    public void add(TextureData data) {
+        TextureData previous = textures.put(data.getPath(), data);
+        if (previous != null) {
+            previous.free();
+        }
+    }
+
+    /**
+     * Creates the arrays, uploads every texture into its layer and frees the decoded pixels. Must run on the
+     * render thread.
+     */
+    public TextureLayers build() {
+        return build(null).join();
+    }
+
+    /**
+     * Creates the arrays and streams every texture into its layer through {@code streamer}, which frees the decoded
+     * pixels. The future completes on the render thread once all layers are uploaded. Must run on the render
+     * thread.
+     */
+    public CompletableFuture<TextureLayers> build(TextureStreamer streamer) {
+        Map<Format, List<TextureData>> groups = new LinkedHashMap<>();
+        List<TextureData> oversized = new ArrayList<>();
+        for (TextureData data : textures.values()) {
+            if (Math.max(data.getWidth(), data.getHeight()) > maxGroupedSize) {
+                oversized.add(data);
+            } else {
+                Format format = new Format(data.getWidth(), data.getHeight(), data.getFormat(),
+                    data.getLevels().size());
+                groups.computeIfAbsent(format, key -> new ArrayList<>()).add(data);
+            }
+        }
+
+        int maxLayers = Math.max(1, glGetInteger(GL_MAX_ARRAY_TEXTURE_LAYERS));
+        Map<String, TextureLayers.Layer> layers = new LinkedHashMap<>();
+        List<TextureArray> arrays = new ArrayList<>();
+        List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        try {
+            for (List<TextureData> group : groups.values()) {
+                for (int start = 0; start < group.size(); start += maxLayers) {
+                    uploads.add(pack(group.subList(start, Math.min(start + maxLayers, group.size())), layers, arrays,
+                        streamer));
+                }
+            }
+            for (TextureData data : oversized) {
+                uploads.add(pack(List.of(data), layers, arrays, streamer));
+            }
+        } finally {
+            // Pixels handed to the streamer are its to free
+            textures.values().forEach(TextureData::free);
+            textures.clear();
+        }
+
+        logger.info("Packed {} textures into {} texture arrays ({} too large to group)", layers.size(),
+            arrays.size(), oversized.size());
+        return CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).handle((ignored, error) -> {
+            if (error != null) {
+                arrays.forEach(TextureArray::cleanup);
+                throw new CompletionException(error);
+            }
+            return new TextureLayers(layers, arrays);
+        });
+    }
+
+    private CompletableFuture<Void> pack(List<TextureData> members, Map<String, TextureLayers.Layer> layers,
+                                         List<TextureArray> arrays, TextureStreamer streamer) {
+        TextureData first = members.get(0);
+        int levels = first.getLevels().size();
+        TextureArray array = new TextureArray(first.getWidth(), first.getHeight(), members.size(), first.getFormat(),
+            levels);
+        arrays.add(array);
+        allocationListener.accept(array);
+        List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        for (int layer = 0; layer < members.size(); layer++) {
+            TextureData data = members.get(layer);
+            if (streamer != null) {
+                int target = layer;
+                uploads.add(streamer.stream(data, array.getStoredFormat(),
+                    (level, y, rows, bytes, offset) -> array.upload(target, level, y, rows, bytes, offset)));
+                textures.remove(data.getPath());
+            } else {
+                array.upload(layer, data.getLevels());
+            }
+            layers.put(data.getPath(), new TextureLayers.Layer(array, layer));
+        }
+        CompletableFuture<Void> uploaded = CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new));
+        return levels == 1 ? uploaded.thenRun(array::generateMipmaps) : uploaded;
+    }
+}
@@ -0,0 +1,193 @@
+package com.sim3d.graphics;
+
+import com.sim3d.engine.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary cache of compiled textures under {@code texture-cache/} in the working directory: the mip chain made by
+ * {@link TextureCompiler}, block-compressed if enabled. Files are keyed by a CRC32C of the encoded image plus its
+ * length and the compression setting, and are memory-mapped on load, so the levels go to GL without decoding an
+ * image or building mipmaps.
+ *
+ * <p>Layout, native byte order: magic, version, byte-order mark, source hash, source length, options key, width,
+ * height, {@link TextureFormat} id, level count, the byte count of every level, then the level bytes.
+ */
+final class TextureCache {
+    private static final Logger logger = LoggerFactory.getLogger(TextureCache.class);
+
+    private static final int MAGIC = 0x54443353; // "S3DT"
+    // Bump whenever the layout or the compiler's output for the same source changes
+    static final int VERSION = 1;
+    private static final int BYTE_ORDER_MARK = 0x01020304;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + 3 * Long.BYTES + 4 * Integer.BYTES;
+    private static final int MAX_LEVELS = 32;
+
+    private static final String EXTENSION = ".tex";
+    private static final Path CACHE_DIR = Path.of("texture-cache");
+
+    private TextureCache() {}
+
+    /**
+     * Returns the compiled texture for the encoded image in {@code source}, from the cache if it is current,
+     * otherwise decoded, compiled and cached. Returns {@code null} if the image cannot be decoded.
+     */
+    static TextureData load(ByteBuffer source, String resourcePath) {
+        String relative = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
+        Path cacheFile = CACHE_DIR.resolve(relative + EXTENSION);
+        boolean compress = Settings.getInstance().getAssets().compressTextures;
+        long hash = hash(source);
+        long length = source.remaining();
+        long optionsKey = compress ? 1 : 0;
+
+        TextureData cached = read(cacheFile, hash, length, optionsKey, resourcePath);
+        if (cached != null) {
+            logger.debug("Loaded compiled texture for {} from {}", resourcePath, cacheFile);
+            return cached;
+        }
+
+        TextureData decoded = TextureLoader.decodeImage(source, resourcePath);
+        if (decoded == null) {
+            return null;
+        }
+        TextureData compiled;
+        try {
+            compiled = TextureCompiler.compile(decoded, compress);
+        } finally {
+            decoded.free();
+        }
+        if (!write(cacheFile, hash, length, optionsKey, compiled)) {
+            return compiled;
+        }
+        // Hand out the mapped copy, so the levels can be streamed again later without holding native memory
+        TextureData mapped = read(cacheFile, hash, length, optionsKey, resourcePath);
+        if (mapped == null) {
+            return compiled;
+        }
+        compiled.free();
+        return mapped;
+    }
+
+    private static long hash(ByteBuffer source) {
+        CRC32C crc = new CRC32C();
+        crc.update(source.duplicate());
+        return crc.getValue();
+    }
+
+    private static TextureData read(Path cacheFile, long hash, long length, long optionsKey, String resourcePath) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                logger.debug("Ignoring texture cache with unexpected size: {}", cacheFile);
+                return null;
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.nativeOrder());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != BYTE_ORDER_MARK) {
+                logger.debug("Ignoring texture cache with foreign format or version: {}", cacheFile);
+                return null;
+            }
+            if (buffer.getLong() != hash || buffer.getLong() != length || buffer.getLong() != optionsKey) {
+                logger.debug("Texture cache is stale: {}", cacheFile);
+                return null;
+            }
+
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            TextureFormat format = TextureFormat.fromId(buffer.getInt());
+            int levelCount = buffer.getInt();
+            if (width <= 0 || height <= 0 || levelCount < 1 || levelCount > MAX_LEVELS
+                || buffer.remaining() < levelCount * Integer.BYTES) {
+                logger.warn("Corrupt texture cache: {}", cacheFile);
+                return null;
+            }
+            int[] levelBytes = new int[levelCount];
+            for (int level = 0; level < levelCount; level++) {
+                levelBytes[level] = buffer.getInt();
+                int expected = format.levelBytes(TextureFormat.levelSize(width, level),
+                    TextureFormat.levelSize(height, level));
+                if (levelBytes[level] != expected) {
+                    logger.warn("Corrupt texture cache: {}", cacheFile);
+                    return null;
+                }
+            }
+
+            List<ByteBuffer> levels = new ArrayList<>(levelCount);
+            int offset = buffer.position();
+            for (int level = 0; level < levelCount; level++) {
+                if (levelBytes[level] > buffer.capacity() - offset) {
+                    logger.warn("Truncated texture cache: {}", cacheFile);
+                    return null;
+                }
+                levels.add(buffer.slice(offset, levelBytes[level]));
+                offset += levelBytes[level];
+            }
+            return TextureData.mapped(width, height, format, levels, resourcePath);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read texture cache {}", cacheFile, e);
+            return null;
+        }
+    }
+
+    private static boolean write(Path cacheFile, long hash, long length, long optionsKey, TextureData data) {
+        List<ByteBuffer> levels = data.getLevels();
+        long size = HEADER_BYTES + (long) levels.size() * Integer.BYTES;
+        for (ByteBuffer level : levels) {
+            size += level.remaining();
+        }
+        if (size > Integer.MAX_VALUE) {
+            logger.debug("Texture too large for the texture cache: {}", cacheFile);
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.nativeOrder());
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(BYTE_ORDER_MARK);
+        buffer.putLong(hash).putLong(length).putLong(optionsKey);
+        buffer.putInt(data.getWidth()).putInt(data.getHeight()).putInt(data.getFormat().id()).putInt(levels.size());
+        for (ByteBuffer level : levels) {
+            buffer.putInt(level.remaining());
+        }
+        for (ByteBuffer level : levels) {
+            buffer.put(level.duplicate());
+        }
+
+        try {
+            Path directory = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, buffer.array());
+                try {
+                    Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.info("Wrote texture cache {} ({} KB, {}, {} levels)", cacheFile, size / 1024, data.getFormat(),
+                levels.size());
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not write texture cache {}: {}", cacheFile, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.sim3d.graphics;
+
+import com.sim3d.loader.NativeBufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns decoded RGBA8 pixels into the levels stored by {@link TextureCache}: a full mip chain down to 1x1, made
+ * with a 2x2 box filter, optionally block-compressed to BC1 for opaque images or BC3 otherwise. Images whose size
+ * is not a multiple of four stay uncompressed.
+ */
+final class TextureCompiler {
+    private TextureCompiler() {}
+
+    /**
+     * Compiles the pixels of {@code decoded}, which stays owned by the caller.
+     */
+    static TextureData compile(TextureData decoded, boolean compress) {
+        int width = decoded.getWidth();
+        int height = decoded.getHeight();
+        ByteBuffer base = decoded.getPixels();
+
+        TextureFormat format = TextureFormat.RGBA8;
+        if (compress && width % 4 == 0 && height % 4 == 0) {
+            format = BlockCompressor.isOpaque(base, width, height) ? TextureFormat.BC1 : TextureFormat.BC3;
+        }
+
+        int levelCount = 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+        List<ByteBuffer> levels = new ArrayList<>(levelCount);
+        ByteBuffer previous = NativeBufferPool.acquire(width * height * 4).put(0, base, 0, width * height * 4);
+        for (int level = 0; level < levelCount; level++) {
+            int levelWidth = TextureFormat.levelSize(width, level);
+            int levelHeight = TextureFormat.levelSize(height, level);
+            ByteBuffer pixels = previous;
+            if (level > 0) {
+                pixels = downsample(previous, TextureFormat.levelSize(width, level - 1),
+                    TextureFormat.levelSize(height, level - 1), levelWidth, levelHeight);
+                if (format.isCompressed()) {
+                    NativeBufferPool.release(previous);
+                }
+            }
+            if (format.isCompressed()) {
+                ByteBuffer blocks = NativeBufferPool.acquire(format.levelBytes(levelWidth, levelHeight));
+                BlockCompressor.encode(format, pixels, levelWidth, levelHeight, blocks);
+                levels.add(blocks);
+            } else {
+                levels.add(pixels);
+            }
+            previous = pixels;
+        }
+        if (format.isCompressed()) {
+            NativeBufferPool.release(previous);
+        }
+
+        return new TextureData(width, height, format, levels, decoded.getPath(),
+            () -> levels.forEach(NativeBufferPool::release));
+    }
+
+    private static ByteBuffer downsample(ByteBuffer source, int sourceWidth, int sourceHeight, int width, int height) {
+        ByteBuffer target = NativeBufferPool.acquire(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            int y0 = Math.min(y * 2, sourceHeight - 1);
+            int y1 = Math.min(y * 2 + 1, sourceHeight - 1);
+            for (int x = 0; x < width; x++) {
+                int x0 = Math.min(x * 2, sourceWidth - 1);
+                int x1 = Math.min(x * 2 + 1, sourceWidth - 1);
+                for (int c = 0; c < 4; c++) {
+                    int sum = (source.get((y0 * sourceWidth + x0) * 4 + c) & 0xFF)
+                        + (source.get((y0 * sourceWidth + x1) * 4 + c) & 0xFF)
+                        + (source.get((y1 * sourceWidth + x0) * 4 + c) & 0xFF)
+                        + (source.get((y1 * sourceWidth + x1) * 4 + c) & 0xFF);
+                    target.put((y * width + x) * 4 + c, (byte) ((sum + 2) >> 2));
+                }
+            }
+        }
+        return target;
+    }
+}
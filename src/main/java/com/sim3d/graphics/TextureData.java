@@ -0,0 +1,130 @@
+package com.sim3d.graphics;
+
+import com.sim3d.loader.NativeBufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.lwjgl.stb.STBImage.stbi_image_free;
+
+/**
+ * Decoded pixels of a texture before GPU upload. Decoding needs no GL context and can run on any thread; only
+ * {@link #upload()} has to run on the render thread. The pixels live in native memory, either allocated by STB,
+ * taken from {@link NativeBufferPool} or mapped from the {@link TextureCache}, and are given back as soon as the
+ * texture is uploaded.
+ *
+ * <p>Freshly decoded images have a single RGBA8 level and get their mipmaps generated by GL; compiled textures
+ * carry their whole mip chain, possibly block-compressed.
+ */
+public final class TextureData {
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final TextureFormat format;
+    private final List<ByteBuffer> levels;
+    private final String path;
+    private final Runnable release;
+    private final boolean mapped;
+    private boolean freed;
+
+    TextureData(int width, int height, int channels, ByteBuffer pixels, String path, boolean stbImage) {
+        this(width, height, channels, TextureFormat.RGBA8, List.of(pixels), path,
+            stbImage ? () -> stbi_image_free(pixels) : () -> NativeBufferPool.release(pixels), false);
+    }
+
+    /**
+     * @param release frees the level buffers once they are no longer needed
+     */
+    TextureData(int width, int height, TextureFormat format, List<ByteBuffer> levels, String path, Runnable release) {
+        this(width, height, 4, format, levels, path, release, false);
+    }
+
+    private TextureData(int width, int height, int channels, TextureFormat format, List<ByteBuffer> levels,
+                        String path, Runnable release, boolean mapped) {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.format = format;
+        this.levels = levels;
+        this.path = path;
+        this.release = release;
+        this.mapped = mapped;
+    }
+
+    /**
+     * Levels mapped from a file, which need no freeing and stay readable for as long as they are referenced.
+     */
+    static TextureData mapped(int width, int height, TextureFormat format, List<ByteBuffer> levels, String path) {
+        return new TextureData(width, height, 4, format, levels, path, () -> {}, true);
+    }
+
+    /**
+     * Creates the {@link Texture} and releases the decoded pixels.
+     */
+    public Texture upload() {
+        try {
+            if (levels.size() == 1 && format == TextureFormat.RGBA8) {
+                return new Texture(width, height, levels.get(0), path, channels);
+            }
+            return new Texture(width, height, format, levels, path);
+        } finally {
+            free();
+        }
+    }
+
+    /**
+     * Releases the decoded pixels without uploading them.
+     */
+    public void free() {
+        if (!freed) {
+            release.run();
+        }
+        freed = true;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public TextureFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * The pixels of every mip level, largest first.
+     */
+    List<ByteBuffer> getLevels() {
+        return levels;
+    }
+
+    ByteBuffer getPixels() {
+        return levels.get(0);
+    }
+
+    public long getByteCount() {
+        long bytes = 0;
+        for (ByteBuffer level : levels) {
+            bytes += level.remaining();
+        }
+        return bytes;
+    }
+
+    /**
+     * Whether the levels are mapped from the texture cache, so they can be read again after {@link #free()}.
+     */
+    boolean isMapped() {
+        return mapped;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,63 @@
+package com.sim3d.graphics;
+
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.GL_COMPRESSED_RGB_S3TC_DXT1_EXT;
+import static org.lwjgl.opengl.GL33.GL_RGBA;
+
+/**
+ * Pixel formats of uploaded texture levels: uncompressed RGBA8, or S3TC blocks of 4x4 pixels, BC1 for opaque
+ * textures at 8 bytes per block and BC3 with interpolated alpha at 16 bytes per block.
+ */
+public enum TextureFormat {
+    RGBA8(0, GL_RGBA, 0),
+    BC1(1, GL_COMPRESSED_RGB_S3TC_DXT1_EXT, 8),
+    BC3(2, GL_COMPRESSED_RGBA_S3TC_DXT5_EXT, 16);
+
+    private final int id;
+    private final int glInternalFormat;
+    private final int blockBytes;
+
+    TextureFormat(int id, int glInternalFormat, int blockBytes) {
+        this.id = id;
+        this.glInternalFormat = glInternalFormat;
+        this.blockBytes = blockBytes;
+    }
+
+    /**
+     * Identifies the format in the texture cache.
+     */
+    int id() {
+        return id;
+    }
+
+    static TextureFormat fromId(int id) {
+        for (TextureFormat format : values()) {
+            if (format.id == id) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown texture format id " + id);
+    }
+
+    public boolean isCompressed() {
+        return blockBytes > 0;
+    }
+
+    int glInternalFormat() {
+        return glInternalFormat;
+    }
+
+    /**
+     * Bytes of one {@code width} by {@code height} level; compressed levels round up to whole blocks.
+     */
+    public int levelBytes(int width, int height) {
+        if (!isCompressed()) {
+            return width * height * 4;
+        }
+        return Math.max(1, (width + 3) / 4) * Math.max(1, (height + 3) / 4) * blockBytes;
+    }
+
+    static int levelSize(int baseSize, int level) {
+        return Math.max(1, baseSize >> level);
+    }
+}
@@ -0,0 +1,35 @@
+package com.sim3d.graphics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The texture arrays made by {@link TextureArrayBuilder} and the layer each texture path ended up in.
+ */
+public final class TextureLayers {
+    public record Layer(TextureArray array, int layer) {}
+
+    private final Map<String, Layer> layers;
+    private final List<TextureArray> arrays;
+
+    TextureLayers(Map<String, Layer> layers, List<TextureArray> arrays) {
+        this.layers = layers;
+        this.arrays = arrays;
+    }
+
+    /**
+     * Returns the layer holding the texture at {@code path}, or {@code null} if it was not packed.
+     */
+    public Layer get(String path) {
+        return path != null ? layers.get(path) : null;
+    }
+
+    public List<TextureArray> getArrays() {
+        return Collections.unmodifiableList(arrays);
+    }
+
+    public void cleanup() {
+        arrays.forEach(TextureArray::cleanup);
+    }
+}
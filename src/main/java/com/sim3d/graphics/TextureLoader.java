@@ -1,16 +1,14 @@
 package com.sim3d.graphics;
 
+import com.sim3d.loader.AssetBytes;
+import com.sim3d.loader.AssetPack;
+import com.sim3d.loader.NativeBufferPool;
 import org.lwjgl.system.MemoryStack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
-import java.util.stream.Collectors;
 
 import static org.lwjgl.stb.STBImage.*;
 
@@ -18,104 +16,107 @@ public class TextureLoader {
     private static final Logger logger = LoggerFactory.getLogger(TextureLoader.class);
 
     public static Texture load(String resourcePath) {
-        logger.info("Loading texture from resource: {}", resourcePath);
-        
+        return decode(resourcePath).upload();
+    }
+
+    /**
+     * Reads and decodes a texture resource without touching GL, so it can run on a worker thread. Missing or
+     * broken images decode to a placeholder.
+     */
+    public static TextureData decode(String resourcePath) {
+        try (AssetBytes bytes = read(resourcePath)) {
+            return decode(bytes, resourcePath);
+        }
+    }
+
+    /**
+     * Reads the encoded bytes of a texture resource from the asset pack or classpath, or returns {@code null} if
+     * it cannot be read. The caller closes the result after decoding.
+     */
+    public static AssetBytes read(String resourcePath) {
+        logger.debug("Loading texture from resource: {}", resourcePath);
+
+        AssetBytes bytes = AssetPack.getInstance().read(resourcePath);
+        if (bytes == null) {
+            logger.warn("Texture resource not found: {}", resourcePath);
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes bytes returned by {@link #read(String)}, or maps the compiled texture from the {@link TextureCache}
+     * if it is current. Safe to call from several threads at once, so textures can be decoded in parallel.
+     */
+    public static TextureData decode(AssetBytes bytes, String resourcePath) {
+        if (bytes == null) {
+            return createDefaultTexture(resourcePath);
+        }
+
         // Handle SVG files by converting them to a simple colored texture
         if (resourcePath.toLowerCase().endsWith(".svg")) {
-            return loadSvgAsTexture(resourcePath);
+            logger.debug("Converting SVG to texture: {}", resourcePath);
+            return createSvgBasedTexture(bytes.asString(), resourcePath);
         }
-        
-        try (InputStream is = TextureLoader.class.getClassLoader().getResourceAsStream(resourcePath)) {
-            if (is == null) {
-                logger.warn("Texture resource not found: {}", resourcePath);
-                return createDefaultTexture(resourcePath);
-            }
-            
-            logger.info("Found texture resource: {}", resourcePath);
-            return loadFromInputStream(is, resourcePath);
+
+        try {
+            TextureData data = TextureCache.load(bytes.buffer(), resourcePath);
+            return data != null ? data : createDefaultTexture(resourcePath);
         } catch (Exception e) {
             logger.warn("Failed to load texture resource: {}", resourcePath, e);
             return createDefaultTexture(resourcePath);
         }
     }
 
-    private static Texture loadFromInputStream(InputStream is, String resourcePath) throws IOException {
-        // Read all bytes from InputStream
-        byte[] bytes = is.readAllBytes();
-        logger.info("Read {} bytes from {}", bytes.length, resourcePath);
-        
-        // Check PNG signature
-        if (bytes.length >= 8) {
-            logger.info("First 8 bytes: {} {} {} {} {} {} {} {}",
-                bytes[0], bytes[1], bytes[2], bytes[3], bytes[4], bytes[5], bytes[6], bytes[7]);
+    /**
+     * Decodes an encoded image into a single RGBA8 level, or returns {@code null} if STB cannot read it.
+     */
+    static TextureData decodeImage(ByteBuffer bytes, String resourcePath) {
+        // STB reads native memory; packed assets already are, classpath resources go through a pooled buffer
+        ByteBuffer pooled = null;
+        ByteBuffer buffer = bytes;
+        if (!bytes.isDirect()) {
+            pooled = NativeBufferPool.acquire(bytes.remaining());
+            buffer = pooled.put(0, bytes, bytes.position(), bytes.remaining());
         }
-        
-        // Create a direct ByteBuffer for STB compatibility
-        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
-        buffer.put(bytes);
-        buffer.flip(); // Prepare buffer for reading
-        
+
         try (MemoryStack stack = MemoryStack.stackPush()) {
             IntBuffer width = stack.mallocInt(1);
             IntBuffer height = stack.mallocInt(1);
             IntBuffer channels = stack.mallocInt(1);
             
-            // Set flip vertically on load for OpenGL coordinate system
-            stbi_set_flip_vertically_on_load(true);
+            // Flip vertically on load for the OpenGL coordinate system; the thread-local flag keeps concurrent
+            // decodes from racing on STB's global one
+            stbi_set_flip_vertically_on_load_thread(1);
             
             ByteBuffer image = stbi_load_from_memory(buffer, width, height, channels, 4);
             if (image == null) {
                 String error = stbi_failure_reason();
                 logger.warn("Failed to load image from {}: {}", resourcePath, error);
-                return createDefaultTexture(resourcePath);
+                return null;
             }
             
             int w = width.get();
             int h = height.get();
             int c = channels.get();
-            logger.info("Successfully loaded image: {}x{} ({} original channels, forced to 4)", w, h, c);
+            logger.debug("Decoded image {}: {}x{} ({} original channels, forced to 4)", resourcePath, w, h, c);
             
-            try {
-                // We requested 4 channels (RGBA), so always pass 4 regardless of original
-                return new Texture(w, h, image, resourcePath, 4);
-            } finally {
-                stbi_image_free(image);
+            // We requested 4 channels (RGBA), so always pass 4 regardless of original
+            return new TextureData(w, h, 4, image, resourcePath, true);
+        } finally {
+            if (pooled != null) {
+                NativeBufferPool.release(pooled);
             }
         }
     }
 
-    private static Texture loadSvgAsTexture(String resourcePath) {
-        logger.debug("Converting SVG to texture: {}", resourcePath);
-        
-        try (InputStream is = TextureLoader.class.getClassLoader().getResourceAsStream(resourcePath)) {
-            if (is == null) {
-                logger.warn("SVG resource not found: {}", resourcePath);
-                return createDefaultTexture(resourcePath);
-            }
-            
-            // Read SVG content and create a simple colored texture
-            String svgContent = new BufferedReader(new InputStreamReader(is))
-                .lines().collect(Collectors.joining("\n"));
-            
-            // For now, create a simple colored texture based on SVG content
-            // In a more advanced implementation, we could use a proper SVG library
-            return createSvgBasedTexture(svgContent, resourcePath);
-            
-        } catch (Exception e) {
-            logger.warn("Failed to load SVG texture: {}", resourcePath, e);
-            return createDefaultTexture(resourcePath);
-        }
-    }
-
-    private static Texture createSvgBasedTexture(String svgContent, String resourcePath) {
+    private static TextureData createSvgBasedTexture(String svgContent, String resourcePath) {
         logger.warn("SVG loading not fully implemented. Creating placeholder texture for: {}", resourcePath);
         
         // Create a simple 64x64 placeholder texture to avoid stack overflow
         int width = 64;
         int height = 64;
         
-        // Use direct byte buffer for OpenGL compatibility
-        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4);
+        ByteBuffer buffer = NativeBufferPool.acquire(width * height * 4);
         
         // Create a simple gradient placeholder
         for (int y = 0; y < height; y++) {
@@ -135,35 +136,34 @@ public class TextureLoader {
         
         // Flip buffer for OpenGL
         buffer.rewind();
-        return new Texture(width, height, buffer, resourcePath);
+        return new TextureData(width, height, 4, buffer, resourcePath, false);
     }
 
-    private static Texture createDefaultTexture(String resourcePath) {
+    private static TextureData createDefaultTexture(String resourcePath) {
         logger.debug("Creating default texture for: {}", resourcePath);
         
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            int width = 64;
-            int height = 64;
-            
-            ByteBuffer buffer = stack.malloc(width * height * 4);
-            
-            // Create a simple white texture with a subtle pattern
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int index = (y * width + x) * 4;
-                    
-                    // Create a checkerboard pattern
-                    byte value = ((x / 8) + (y / 8)) % 2 == 0 ? (byte) 255 : (byte) 200;
-                    
-                    buffer.put(index, value);     // R
-                    buffer.put(index + 1, value); // G
-                    buffer.put(index + 2, value); // B
-                    buffer.put(index + 3, (byte) 255); // A
-                }
+        int width = 64;
+        int height = 64;
+        
+        // Pooled rather than stack memory, as the pixels may be uploaded later on another thread
+        ByteBuffer buffer = NativeBufferPool.acquire(width * height * 4);
+        
+        // Create a simple white texture with a subtle pattern
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = (y * width + x) * 4;
+                
+                // Create a checkerboard pattern
+                byte value = ((x / 8) + (y / 8)) % 2 == 0 ? (byte) 255 : (byte) 200;
+                
+                buffer.put(index, value);     // R
+                buffer.put(index + 1, value); // G
+                buffer.put(index + 2, value); // B
+                buffer.put(index + 3, (byte) 255); // A
             }
-            
-            return new Texture(width, height, buffer, resourcePath);
         }
+        
+        return new TextureData(width, height, 4, buffer, resourcePath, false);
     }
 
     public static void flipVertically(ByteBuffer image, int width, int height) {
@@ -0,0 +1,457 @@
+package com.sim3d.graphics;
+
+import com.sim3d.loader.NativeBufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * Streams texture pixels to the GPU over several frames through a ring of pixel buffer objects. Each
+ * {@link #process()} copies the next rows of queued textures into one mapped buffer of the ring and issues the
+ * sub-image uploads from it, so a frame never uploads more than one buffer's worth, level by level and row by row.
+ * A buffer is only refilled once the fence behind its uploads has signaled, and a fence after the last rows of a
+ * texture marks it ready. Everything here runs on the render thread, including the completion of the futures.
+ *
+ * <p>Textures with a mip chain mapped from the {@link TextureCache} start out with only their mip tail, the levels
+ * no larger than the tail size. The renderer reports how many pixels the objects using a texture cover each frame,
+ * and finer levels are streamed in one at a time until they match. Levels no object has needed for a while are
+ * freed again by {@link #trimMips(long)} when GPU memory runs short.
+ */
+public final class TextureStreamer {
+    private static final Logger logger = LoggerFactory.getLogger(TextureStreamer.class);
+
+    // Frames of uploads in flight before the ring waits for the GPU
+    private static final int RING_SIZE = 3;
+    // Holds one row of the widest texture GL allows, 16384 RGBA8 pixels, with room to spare
+    private static final int MIN_BUFFER_BYTES = 256 * 1024;
+    // Frames after which a level nobody asked for may be dropped
+    private static final int IDLE_FRAMES = 300;
+
+    private final int bufferBytes;
+    private final int mipTailSize;
+    private final int[] buffers = new int[RING_SIZE];
+    private final long[] bufferFences = new long[RING_SIZE];
+    private int nextBuffer;
+    private final Deque<Job> queue = new ArrayDeque<>();
+    // Textures fully copied out, waiting for their fence
+    private final List<Job> uploading = new ArrayList<>();
+    private final Map<Texture, Residency> residencies = new HashMap<>();
+    private Consumer<Texture> residencyListener = texture -> {};
+    private long frame;
+
+    /**
+     * Uploads rows of one mip level from the bound pixel unpack buffer, as {@link Texture#upload}.
+     */
+    @FunctionalInterface
+    interface RowUploader {
+        void upload(int level, int y, int rows, int bytes, long offset);
+    }
+
+    private record Chunk(Job job, int level, int y, int rows, int bytes, int offset) {}
+
+    /**
+     * A texture whose finer mip levels are streamed in on demand; levels below its base level are not sampled.
+     */
+    private static final class Residency {
+        final Texture texture;
+        final TextureData source;
+        final int tailLevel;
+        // Frame each level was last asked for
+        final long[] lastNeeded;
+        // Finest level asked for since the last process()
+        int wanted;
+        boolean loading;
+
+        Residency(Texture texture, TextureData source, int tailLevel, long frame) {
+            this.texture = texture;
+            this.source = source;
+            this.tailLevel = tailLevel;
+            this.lastNeeded = new long[texture.getLevelCount()];
+            this.lastNeeded[tailLevel] = frame;
+            this.wanted = tailLevel;
+        }
+
+        /**
+         * The last frame any level at or finer than {@code level} was asked for.
+         */
+        long lastNeededAtOrBelow(int level) {
+            long last = Long.MIN_VALUE;
+            for (int finer = 0; finer <= level; finer++) {
+                last = Math.max(last, lastNeeded[finer]);
+            }
+            return last;
+        }
+    }
+
+    /**
+     * @param bufferBytes size of each buffer in the ring, which bounds the bytes uploaded per frame
+     * @param mipTailSize largest level size loaded up front for textures streamed by mip level, or 0 to always
+     *                    load whole textures
+     */
+    public TextureStreamer(int bufferBytes, int mipTailSize) {
+        this.bufferBytes = Math.max(MIN_BUFFER_BYTES, bufferBytes);
+        this.mipTailSize = mipTailSize;
+    }
+
+    /**
+     * Called on the render thread whenever the GPU bytes of a texture change as levels are streamed in or dropped.
+     */
+    public void setResidencyListener(Consumer<Texture> listener) {
+        this.residencyListener = listener;
+    }
+
+    /**
+     * Creates the texture and queues its pixels for upload. The future completes once the GPU has them; the
+     * decoded pixels are freed as soon as they are copied into the ring. Textures streamed by mip level complete
+     * with just their mip tail.
+     */
+    public CompletableFuture<Texture> stream(TextureData data) {
+        int levels = data.getLevels().size();
+        int tailLevel = tailLevel(data);
+        Texture texture = new Texture(data.getWidth(), data.getHeight(), data.getFormat(), levels, tailLevel,
+            data.getPath());
+        return stream(data, tailLevel, levels, texture.getStoredFormat(), texture::upload, tailLevel == 0)
+            .handle((ignored, error) -> {
+                if (error != null) {
+                    texture.cleanup();
+                    throw new CompletionException(error);
+                }
+                texture.finishUpload();
+                if (tailLevel > 0) {
+                    residencies.put(texture, new Residency(texture, data, tailLevel, frame));
+                }
+                return texture;
+            });
+    }
+
+    /**
+     * Queues the levels of {@code data} for {@code uploader}, decoded to RGBA8 on the way if {@code storedFormat}
+     * is not their format.
+     */
+    CompletableFuture<Void> stream(TextureData data, TextureFormat storedFormat, RowUploader uploader) {
+        return stream(data, 0, data.getLevels().size(), storedFormat, uploader, true);
+    }
+
+    private CompletableFuture<Void> stream(TextureData data, int fromLevel, int toLevel, TextureFormat storedFormat,
+                                           RowUploader uploader, boolean freeWhenCopied) {
+        Job job = new Job(data, fromLevel, toLevel, storedFormat, uploader, freeWhenCopied);
+        queue.add(job);
+        return job.done;
+    }
+
+    /**
+     * The first level of the mip tail, or 0 if the texture is loaded whole: only mapped mip chains can be read
+     * again level by level.
+     */
+    private int tailLevel(TextureData data) {
+        int levels = data.getLevels().size();
+        if (mipTailSize <= 0 || levels == 1 || !data.isMapped()) {
+            return 0;
+        }
+        int level = 0;
+        while (level < levels - 1 && Math.max(TextureFormat.levelSize(data.getWidth(), level),
+                TextureFormat.levelSize(data.getHeight(), level)) > mipTailSize) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Reports that objects using {@code texture} cover about {@code pixels} pixels across on screen this frame,
+     * asking for the level whose texels come closest to one per pixel. Textures not streamed by mip level are
+     * ignored.
+     */
+    public void requestCoverage(Texture texture, float pixels) {
+        Residency residency = residencies.get(texture);
+        if (residency == null) {
+            return;
+        }
+        int size = Math.max(texture.getWidth(), texture.getHeight());
+        int level = pixels >= size ? 0 : (int) (Math.log(size / Math.max(pixels, 1f)) / Math.log(2.0));
+        level = Math.min(level, residency.tailLevel);
+        residency.wanted = Math.min(residency.wanted, level);
+        residency.lastNeeded[level] = frame;
+    }
+
+    /**
+     * Frees mip levels no object has asked for in a while, those unused longest first, until at least
+     * {@code bytes} are freed or none are left. Returns the bytes freed.
+     */
+    public long trimMips(long bytes) {
+        long idleBefore = frame - IDLE_FRAMES;
+        List<Residency> candidates = new ArrayList<>();
+        for (Residency residency : residencies.values()) {
+            int base = residency.texture.getBaseLevel();
+            if (!residency.loading && base < residency.tailLevel && residency.lastNeededAtOrBelow(base) < idleBefore) {
+                candidates.add(residency);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(residency ->
+            residency.lastNeededAtOrBelow(residency.texture.getBaseLevel())));
+
+        long freed = 0;
+        for (Residency residency : candidates) {
+            int level = residency.texture.getBaseLevel();
+            while (level < residency.tailLevel && residency.lastNeededAtOrBelow(level) < idleBefore) {
+                level++;
+            }
+            freed += residency.texture.dropLevels(level);
+            residencyListener.accept(residency.texture);
+            logger.debug("Dropped mip levels of {} below level {}", residency.texture.getPath(), level);
+            if (freed >= bytes) {
+                break;
+            }
+        }
+        return freed;
+    }
+
+    /**
+     * Queues the next finer level of every texture that objects asked for in more detail than it has.
+     */
+    private void updateResidency() {
+        residencies.values().removeIf(residency -> residency.texture.isDeleted());
+        for (Residency residency : residencies.values()) {
+            Texture texture = residency.texture;
+            int level = texture.getBaseLevel() - 1;
+            if (!residency.loading && residency.wanted <= level) {
+                residency.loading = true;
+                texture.allocateLevel(level);
+                residencyListener.accept(texture);
+                stream(residency.source, level, level + 1, texture.getStoredFormat(), (streamed, y, rows, bytes,
+                    offset) -> {
+                    if (!texture.isDeleted()) {
+                        texture.upload(streamed, y, rows, bytes, offset);
+                    }
+                }, false).thenRun(() -> {
+                    residency.loading = false;
+                    if (!texture.isDeleted()) {
+                        texture.setBaseLevel(level);
+                    }
+                });
+            }
+            residency.wanted = residency.tailLevel;
+        }
+    }
+
+    /**
+     * Completes the textures the GPU has finished with, then fills the next buffer of the ring if the GPU is done
+     * reading it. Call once per frame.
+     */
+    public void process() {
+        completeReady();
+        updateResidency();
+        frame++;
+        if (queue.isEmpty()) {
+            return;
+        }
+        if (buffers[0] == 0) {
+            createBuffers();
+        }
+
+        int index = nextBuffer;
+        if (bufferFences[index] != 0) {
+            if (!signaled(bufferFences[index])) {
+                return;
+            }
+            glDeleteSync(bufferFences[index]);
+            bufferFences[index] = 0;
+        }
+
+        GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, buffers[index]);
+        // The fence showed the GPU is done with this buffer, so mapping it need not synchronize
+        ByteBuffer mapped = glMapBufferRange(GL_PIXEL_UNPACK_BUFFER, 0, bufferBytes,
+            GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT | GL_MAP_UNSYNCHRONIZED_BIT);
+        if (mapped == null) {
+            GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+            logger.warn("Could not map texture upload buffer");
+            return;
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        List<Job> copied = new ArrayList<>();
+        int offset = 0;
+        Job job;
+        while ((job = queue.peek()) != null) {
+            Chunk chunk = job.copyNext(mapped, offset, bufferBytes - offset);
+            if (chunk == null) {
+                break;
+            }
+            chunks.add(chunk);
+            offset += chunk.bytes();
+            if (job.isCopied()) {
+                queue.poll();
+                if (job.freeWhenCopied) {
+                    job.data.free();
+                }
+                copied.add(job);
+            }
+        }
+        if (!glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER)) {
+            logger.warn("Texture upload buffer was lost while mapped; some textures may show garbage");
+        }
+
+        for (Chunk chunk : chunks) {
+            chunk.job().uploader.upload(chunk.level(), chunk.y(), chunk.rows(), chunk.bytes(), chunk.offset());
+        }
+        GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        bufferFences[index] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        for (Job done : copied) {
+            done.fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            uploading.add(done);
+        }
+        nextBuffer = (index + 1) % RING_SIZE;
+    }
+
+    /**
+     * Whether no texture is queued or waiting for the GPU.
+     */
+    public boolean isIdle() {
+        return queue.isEmpty() && uploading.isEmpty();
+    }
+
+    /**
+     * Cancels all queued uploads and frees the ring.
+     */
+    public void cleanup() {
+        for (Job job : queue) {
+            job.release();
+            if (job.freeWhenCopied) {
+                job.data.free();
+            }
+            job.done.cancel(false);
+        }
+        queue.clear();
+        for (Job job : uploading) {
+            glDeleteSync(job.fence);
+            job.done.cancel(false);
+        }
+        uploading.clear();
+        residencies.clear();
+        for (int i = 0; i < RING_SIZE; i++) {
+            if (bufferFences[i] != 0) {
+                glDeleteSync(bufferFences[i]);
+                bufferFences[i] = 0;
+            }
+            if (buffers[i] != 0) {
+                GLState.deleteBuffer(buffers[i]);
+                buffers[i] = 0;
+            }
+        }
+    }
+
+    private void createBuffers() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            buffers[i] = glGenBuffers();
+            GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, buffers[i]);
+            glBufferData(GL_PIXEL_UNPACK_BUFFER, bufferBytes, GL_STREAM_DRAW);
+        }
+        GLState.bindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+        logger.info("Created {} texture upload buffers of {} KB", RING_SIZE, bufferBytes / 1024);
+    }
+
+    private void completeReady() {
+        List<Job> ready = new ArrayList<>();
+        uploading.removeIf(job -> {
+            if (!signaled(job.fence)) {
+                return false;
+            }
+            glDeleteSync(job.fence);
+            ready.add(job);
+            return true;
+        });
+        // Completing may queue more textures, so only once the list is consistent again
+        ready.forEach(job -> job.done.complete(null));
+    }
+
+    private static boolean signaled(long fence) {
+        // A failed wait counts as signaled, so a lost context cannot hold up loading forever
+        return glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, 0) != GL_TIMEOUT_EXPIRED;
+    }
+
+    /**
+     * Levels of one texture on their way through the ring; {@code level} and {@code y} are the next rows to copy.
+     */
+    private static final class Job {
+        final TextureData data;
+        final int toLevel;
+        final TextureFormat storedFormat;
+        final RowUploader uploader;
+        final boolean freeWhenCopied;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        int level;
+        int y;
+        // The current level decoded to RGBA8, when the stored format is not the data's
+        ByteBuffer decompressed;
+        long fence;
+
+        Job(TextureData data, int fromLevel, int toLevel, TextureFormat storedFormat, RowUploader uploader,
+            boolean freeWhenCopied) {
+            this.data = data;
+            this.level = fromLevel;
+            this.toLevel = toLevel;
+            this.storedFormat = storedFormat;
+            this.uploader = uploader;
+            this.freeWhenCopied = freeWhenCopied;
+        }
+
+        /**
+         * Copies as many rows of the current level as fit in {@code space} bytes at {@code offset}, or returns
+         * {@code null} if not even one row fits. Compressed levels are copied in whole block rows.
+         */
+        Chunk copyNext(ByteBuffer mapped, int offset, int space) {
+            int levelWidth = TextureFormat.levelSize(data.getWidth(), level);
+            int levelHeight = TextureFormat.levelSize(data.getHeight(), level);
+            ByteBuffer source = data.getLevels().get(level);
+            if (storedFormat != data.getFormat()) {
+                if (decompressed == null) {
+                    decompressed = Texture.decompress(data.getFormat(), source, levelWidth, levelHeight);
+                }
+                source = decompressed;
+            }
+
+            int rowHeight = storedFormat.isCompressed() ? 4 : 1;
+            int rowBytes = storedFormat.levelBytes(levelWidth, 1);
+            int firstRow = y / rowHeight;
+            int rows = Math.min((levelHeight + rowHeight - 1) / rowHeight - firstRow, space / rowBytes);
+            if (rows <= 0) {
+                return null;
+            }
+            int bytes = rows * rowBytes;
+            mapped.put(offset, source, firstRow * rowBytes, bytes);
+
+            int pixelRows = Math.min(rows * rowHeight, levelHeight - y);
+            Chunk chunk = new Chunk(this, level, y, pixelRows, bytes, offset);
+            y += pixelRows;
+            if (y == levelHeight) {
+                release();
+                level++;
+                y = 0;
+            }
+            return chunk;
+        }
+
+        boolean isCopied() {
+            return level == toLevel;
+        }
+
+        void release() {
+            if (decompressed != null) {
+                NativeBufferPool.release(decompressed);
+                decompressed = null;
+            }
+        }
+    }
+}
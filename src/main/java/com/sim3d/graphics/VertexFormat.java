@@ -0,0 +1,249 @@
+package com.sim3d.graphics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * Describes how a {@link Mesh} stores its vertices on the GPU. Geometry is always produced in the interleaved
+ * float layout position (3), colour (3), normal (3) and optional texture coordinates (2); a format encodes that
+ * layout into its own attribute types when the mesh is built.
+ *
+ * <p>Quantized positions are stored relative to the mesh bounds and expanded in the vertex shader with the
+ * per-mesh decode values passed as constant attributes 4 and 5; octahedral normals are unpacked there as well.
+ */
+public final class VertexFormat {
+    public enum PositionEncoding { FLOAT, HALF, SNORM16 }
+    public enum NormalEncoding { FLOAT, OCTAHEDRAL }
+    public enum TexCoordEncoding { FLOAT, HALF }
+
+    /** Floats per vertex in the source layout without and with texture coordinates. */
+    public static final int SOURCE_STRIDE = 9;
+    public static final int SOURCE_STRIDE_TEXTURED = 11;
+
+    private static final float[] IDENTITY_DECODE = { 1.0f, 1.0f, 1.0f, 0.0f, 0.0f, 0.0f };
+
+    private final PositionEncoding position;
+    private final NormalEncoding normal;
+    private final TexCoordEncoding texCoord;
+    private final boolean color;
+    private final boolean texCoords;
+    private final int positionOffset;
+    private final int colorOffset;
+    private final int normalOffset;
+    private final int texCoordOffset;
+    private final int stride;
+
+    public VertexFormat(PositionEncoding position, NormalEncoding normal, TexCoordEncoding texCoord,
+                        boolean color, boolean texCoords) {
+        this.position = position;
+        this.normal = normal;
+        this.texCoord = texCoord;
+        this.color = color;
+        this.texCoords = texCoords;
+
+        int offset = 0;
+        positionOffset = offset;
+        offset += position == PositionEncoding.FLOAT ? 3 * Float.BYTES : 4 * Short.BYTES;
+        colorOffset = offset;
+        offset += color ? 3 * Float.BYTES : 0;
+        normalOffset = offset;
+        offset += normal == NormalEncoding.FLOAT ? 3 * Float.BYTES : 2 * Short.BYTES;
+        texCoordOffset = offset;
+        if (texCoords) {
+            offset += texCoord == TexCoordEncoding.FLOAT ? 2 * Float.BYTES : 2 * Short.BYTES;
+        }
+        stride = offset;
+    }
+
+    /**
+     * The original all-float layout with a colour stream: 36 bytes, or 44 with texture coordinates.
+     */
+    public static VertexFormat standard(boolean texCoords) {
+        return new VertexFormat(PositionEncoding.FLOAT, NormalEncoding.FLOAT, TexCoordEncoding.FLOAT, true, texCoords);
+    }
+
+    /**
+     * Normalized-short positions, octahedral normals and half-float texture coordinates without a colour stream:
+     * 12 bytes, or 16 with texture coordinates.
+     */
+    public static VertexFormat compact(boolean texCoords) {
+        return new VertexFormat(PositionEncoding.SNORM16, NormalEncoding.OCTAHEDRAL, TexCoordEncoding.HALF, false,
+            texCoords);
+    }
+
+    public boolean hasTextureCoords() {
+        return texCoords;
+    }
+
+    public int stride() {
+        return stride;
+    }
+
+    public int sourceStride() {
+        return texCoords ? SOURCE_STRIDE_TEXTURED : SOURCE_STRIDE;
+    }
+
+    /**
+     * Bytes per index for a mesh with {@code vertexCount} vertices: 16-bit indices whenever they fit.
+     */
+    public static int indexSize(int vertexCount) {
+        return vertexCount <= 0x10000 ? Short.BYTES : Integer.BYTES;
+    }
+
+    /**
+     * Packs the encodings into an int, for storing the format alongside encoded data.
+     */
+    public int id() {
+        return position.ordinal() | normal.ordinal() << 2 | texCoord.ordinal() << 3 | (color ? 1 << 4 : 0)
+            | (texCoords ? 1 << 5 : 0);
+    }
+
+    public static VertexFormat fromId(int id) {
+        return new VertexFormat(PositionEncoding.values()[id & 3], NormalEncoding.values()[(id >> 2) & 1],
+            TexCoordEncoding.values()[(id >> 3) & 1], (id & (1 << 4)) != 0, (id & (1 << 5)) != 0);
+    }
+
+    /**
+     * Computes the per-axis scale and offset that map quantized positions back to model space, as
+     * {@code {scaleX, scaleY, scaleZ, offsetX, offsetY, offsetZ}}.
+     */
+    public float[] positionDecode(float[] source, int vertexCount) {
+        if (position != PositionEncoding.SNORM16 || vertexCount == 0) {
+            return IDENTITY_DECODE.clone();
+        }
+        int sourceStride = sourceStride();
+        float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+        float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        for (int v = 0; v < vertexCount; v++) {
+            for (int axis = 0; axis < 3; axis++) {
+                float value = source[v * sourceStride + axis];
+                min[axis] = Math.min(min[axis], value);
+                max[axis] = Math.max(max[axis], value);
+            }
+        }
+        float[] decode = new float[6];
+        for (int axis = 0; axis < 3; axis++) {
+            float halfExtent = (max[axis] - min[axis]) * 0.5f;
+            decode[axis] = halfExtent > 0 ? halfExtent : 1.0f;
+            decode[axis + 3] = (min[axis] + max[axis]) * 0.5f;
+        }
+        return decode;
+    }
+
+    /**
+     * Encodes {@code vertexCount} vertices from the source layout into {@code target} at its position, advancing it.
+     */
+    public void encodeVertices(float[] source, int vertexCount, float[] positionDecode, ByteBuffer target) {
+        ByteBuffer out = target.order(ByteOrder.nativeOrder());
+        int sourceStride = sourceStride();
+        for (int v = 0; v < vertexCount; v++) {
+            int s = v * sourceStride;
+            switch (position) {
+                case FLOAT -> out.putFloat(source[s]).putFloat(source[s + 1]).putFloat(source[s + 2]);
+                case HALF -> out.putShort(Float.floatToFloat16(source[s]))
+                    .putShort(Float.floatToFloat16(source[s + 1]))
+                    .putShort(Float.floatToFloat16(source[s + 2]))
+                    .putShort((short) 0);
+                case SNORM16 -> out.putShort(snorm16((source[s] - positionDecode[3]) / positionDecode[0]))
+                    .putShort(snorm16((source[s + 1] - positionDecode[4]) / positionDecode[1]))
+                    .putShort(snorm16((source[s + 2] - positionDecode[5]) / positionDecode[2]))
+                    .putShort((short) 0);
+            }
+            if (color) {
+                out.putFloat(source[s + 3]).putFloat(source[s + 4]).putFloat(source[s + 5]);
+            }
+            if (normal == NormalEncoding.FLOAT) {
+                out.putFloat(source[s + 6]).putFloat(source[s + 7]).putFloat(source[s + 8]);
+            } else {
+                putOctahedral(out, source[s + 6], source[s + 7], source[s + 8]);
+            }
+            if (texCoords && texCoord == TexCoordEncoding.FLOAT) {
+                out.putFloat(source[s + 9]).putFloat(source[s + 10]);
+            } else if (texCoords) {
+                out.putShort(Float.floatToFloat16(source[s + 9])).putShort(Float.floatToFloat16(source[s + 10]));
+            }
+        }
+    }
+
+    /**
+     * Encodes indices with {@link #indexSize(int)} bytes each into {@code target} at its position, advancing it.
+     */
+    public static void encodeIndices(int[] indices, int indexCount, int vertexCount, ByteBuffer target) {
+        ByteBuffer out = target.order(ByteOrder.nativeOrder());
+        if (indexSize(vertexCount) == Short.BYTES) {
+            for (int i = 0; i < indexCount; i++) {
+                out.putShort((short) indices[i]);
+            }
+        } else {
+            for (int i = 0; i < indexCount; i++) {
+                out.putInt(indices[i]);
+            }
+        }
+    }
+
+    /**
+     * Points the attributes of the bound VAO at the bound vertex buffer.
+     */
+    void enableAttributes() {
+        // Position (location = 0)
+        switch (position) {
+            case FLOAT -> glVertexAttribPointer(0, 3, GL_FLOAT, false, stride, positionOffset);
+            case HALF -> glVertexAttribPointer(0, 3, GL_HALF_FLOAT, false, stride, positionOffset);
+            case SNORM16 -> glVertexAttribPointer(0, 3, GL_SHORT, true, stride, positionOffset);
+        }
+        glEnableVertexAttribArray(0);
+
+        // Color (location = 1)
+        if (color) {
+            glVertexAttribPointer(1, 3, GL_FLOAT, false, stride, colorOffset);
+            glEnableVertexAttribArray(1);
+        }
+
+        // Normal (location = 2)
+        if (normal == NormalEncoding.FLOAT) {
+            glVertexAttribPointer(2, 3, GL_FLOAT, false, stride, normalOffset);
+        } else {
+            glVertexAttribPointer(2, 2, GL_SHORT, true, stride, normalOffset);
+        }
+        glEnableVertexAttribArray(2);
+
+        // Texture coordinates (location = 3)
+        if (texCoords) {
+            int type = texCoord == TexCoordEncoding.FLOAT ? GL_FLOAT : GL_HALF_FLOAT;
+            glVertexAttribPointer(3, 2, type, false, stride, texCoordOffset);
+            glEnableVertexAttribArray(3);
+        }
+    }
+
+    /**
+     * Sets the constant decode attributes read by the vertex shader for the next draw.
+     */
+    void applyDecode(float[] positionDecode) {
+        glVertexAttrib4f(4, positionDecode[0], positionDecode[1], positionDecode[2],
+            normal == NormalEncoding.OCTAHEDRAL ? 1.0f : 0.0f);
+        glVertexAttrib3f(5, positionDecode[3], positionDecode[4], positionDecode[5]);
+    }
+
+    private static short snorm16(float value) {
+        return (short) Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * 32767.0f);
+    }
+
+    private static void putOctahedral(ByteBuffer out, float x, float y, float z) {
+        float sum = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if (sum == 0) {
+            out.putShort((short) 0).putShort(snorm16(1.0f));
+            return;
+        }
+        float u = x / sum;
+        float v = y / sum;
+        if (z < 0) {
+            float foldedU = (1.0f - Math.abs(v)) * (u >= 0 ? 1.0f : -1.0f);
+            float foldedV = (1.0f - Math.abs(u)) * (v >= 0 ? 1.0f : -1.0f);
+            u = foldedU;
+            v = foldedV;
+        }
+        out.putShort(snorm16(u)).putShort(snorm16(v));
+    }
+}
@@ -1,11 +1,11 @@
 package com.sim3d.graphics.primitives;
 
+import com.sim3d.graphics.FloatArrayBuilder;
+import com.sim3d.graphics.IntArrayBuilder;
 import com.sim3d.graphics.Mesh;
+import com.sim3d.graphics.VertexFormat;
 import org.joml.Vector3f;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class PrimitiveFactory {
 
     public static Mesh createCube(Vector3f color) {
@@ -52,7 +52,7 @@ public class PrimitiveFactory {
             20, 21, 22, 22, 23, 20  // Left
         };
 
-        return new Mesh(vertices, indices);
+        return new Mesh(vertices, indices, VertexFormat.compact(false));
     }
 
     public static Mesh createPlane(float width, float depth, Vector3f color) {
@@ -71,7 +71,7 @@ public class PrimitiveFactory {
             0, 1, 2, 2, 3, 0
         };
 
-        return new Mesh(vertices, indices);
+        return new Mesh(vertices, indices, VertexFormat.compact(false));
     }
 
     public static Mesh createTexturedPlane(float width, float depth, Vector3f color, float textureScale) {
@@ -96,7 +96,7 @@ public class PrimitiveFactory {
             0, 3, 2, 2, 1, 0  // Reversed winding order to make face visible from above
         };
 
-        return new Mesh(vertices, indices, true); // true indicates hasTextureCoords
+        return new Mesh(vertices, indices, VertexFormat.compact(true));
     }
 
     public static Mesh createPyramid(Vector3f color) {
@@ -157,7 +157,7 @@ public class PrimitiveFactory {
             12, 13, 14, 14, 15, 12
         };
 
-        return new Mesh(vertices, indices);
+        return new Mesh(vertices, indices, VertexFormat.compact(false));
     }
 
     public static Mesh createCylinder(Vector3f color, int segments) {
@@ -165,8 +165,9 @@ public class PrimitiveFactory {
         float radius = 0.5f;
         float height = 1.0f;
 
-        List<Float> vertexList = new ArrayList<>();
-        List<Integer> indexList = new ArrayList<>();
+        // Side quads plus one fan per cap
+        FloatArrayBuilder vertexList = new FloatArrayBuilder((segments * 8 + 2) * 9);
+        IntArrayBuilder indexList = new IntArrayBuilder(segments * 12);
 
         int vertexIndex = 0;
 
@@ -236,19 +237,19 @@ public class PrimitiveFactory {
             vertexIndex += 2;
         }
 
-        return new Mesh(toFloatArray(vertexList), toIntArray(indexList));
+        return new Mesh(vertexList, indexList, VertexFormat.compact(false));
     }
 
     public static Mesh createSphere(Vector3f color, int segments) {
         float r = color.x, g = color.y, b = color.z;
         float radius = 0.5f;
 
-        List<Float> vertexList = new ArrayList<>();
-        List<Integer> indexList = new ArrayList<>();
-
         int rings = segments;
         int sectors = segments;
 
+        FloatArrayBuilder vertexList = new FloatArrayBuilder((rings + 1) * (sectors + 1) * 9);
+        IntArrayBuilder indexList = new IntArrayBuilder(rings * sectors * 6);
+
         for (int ring = 0; ring <= rings; ring++) {
             float phi = (float) (Math.PI * ring / rings);
             float y = (float) Math.cos(phi) * radius;
@@ -282,21 +283,15 @@ public class PrimitiveFactory {
             }
         }
 
-        return new Mesh(toFloatArray(vertexList), toIntArray(indexList));
+        return new Mesh(vertexList, indexList, VertexFormat.compact(false));
     }
 
-    private static void addVertex(List<Float> list, float x, float y, float z,
+    private static void addVertex(FloatArrayBuilder list, float x, float y, float z,
                                    float r, float g, float b,
                                    float nx, float ny, float nz) {
-        list.add(x);
-        list.add(y);
-        list.add(z);
-        list.add(r);
-        list.add(g);
-        list.add(b);
-        list.add(nx);
-        list.add(ny);
-        list.add(nz);
+        list.add(x, y, z);
+        list.add(r, g, b);
+        list.add(nx, ny, nz);
     }
 
     private static Vector3f calculateNormal(Vector3f v0, Vector3f v1, Vector3f v2) {
@@ -304,20 +299,4 @@ public class PrimitiveFactory {
         Vector3f edge2 = new Vector3f(v2).sub(v0);
         return edge1.cross(edge2).normalize();
     }
-
-    private static float[] toFloatArray(List<Float> list) {
-        float[] array = new float[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            array[i] = list.get(i);
-        }
-        return array;
-    }
-
-    private static int[] toIntArray(List<Integer> list) {
-        int[] array = new int[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            array[i] = list.get(i);
-        }
-        return array;
-    }
 }
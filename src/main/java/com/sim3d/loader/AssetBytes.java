@@ -0,0 +1,54 @@
+package com.sim3d.loader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The raw bytes of an asset: a slice of the mapped {@link AssetPack}, a pooled buffer an entry was decompressed
+ * into, or the contents of a classpath resource or file. Closing it returns pooled memory; the buffer must not be
+ * used afterwards.
+ */
+public final class AssetBytes implements AutoCloseable {
+    private final ByteBuffer buffer;
+    private final boolean pooled;
+    private boolean closed;
+
+    private AssetBytes(ByteBuffer buffer, boolean pooled) {
+        this.buffer = buffer;
+        this.pooled = pooled;
+    }
+
+    static AssetBytes of(ByteBuffer buffer) {
+        return new AssetBytes(buffer, false);
+    }
+
+    static AssetBytes pooled(ByteBuffer buffer) {
+        return new AssetBytes(buffer, true);
+    }
+
+    /**
+     * The bytes between position and limit. Callers may move the position of the returned buffer.
+     */
+    public ByteBuffer buffer() {
+        if (closed) {
+            throw new IllegalStateException("Asset bytes already closed");
+        }
+        return buffer;
+    }
+
+    public int size() {
+        return buffer.remaining();
+    }
+
+    public String asString() {
+        return StandardCharsets.UTF_8.decode(buffer().duplicate()).toString();
+    }
+
+    @Override
+    public void close() {
+        if (pooled && !closed) {
+            NativeBufferPool.release(buffer);
+        }
+        closed = true;
+    }
+}
@@ -0,0 +1,145 @@
+package com.sim3d.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Resident assets of one type keyed by path, with reference counts, the GPU bytes each one occupies and the time it
+ * was last used, for {@link AssetManager}'s LRU eviction. References can be taken before an asset has loaded.
+ * Removing an entry does not free the asset; the caller owns that.
+ */
+final class AssetCache<T> {
+    private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> references = new ConcurrentHashMap<>();
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final ToLongFunction<T> sizer;
+
+    private static final class Entry<T> {
+        final T asset;
+        long bytes;
+        volatile long lastUsed;
+
+        Entry(T asset, long bytes) {
+            this.asset = asset;
+            this.bytes = bytes;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+
+    AssetCache(ToLongFunction<T> sizer) {
+        this.sizer = sizer;
+    }
+
+    /**
+     * Returns the asset and marks it as used, or {@code null} if it is not resident.
+     */
+    T get(String path) {
+        Entry<T> entry = entries.get(path);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = System.nanoTime();
+        return entry.asset;
+    }
+
+    /**
+     * Returns the asset without marking it as used, or {@code null} if it is not resident.
+     */
+    T peek(String path) {
+        Entry<T> entry = entries.get(path);
+        return entry != null ? entry.asset : null;
+    }
+
+    boolean contains(String path) {
+        return entries.containsKey(path);
+    }
+
+    /**
+     * Stores the asset and returns the one it replaced, if any.
+     */
+    T put(String path, T asset) {
+        Entry<T> entry = new Entry<>(asset, sizer.applyAsLong(asset));
+        residentBytes.addAndGet(entry.bytes);
+        Entry<T> previous = entries.put(path, entry);
+        if (previous != null) {
+            residentBytes.addAndGet(-previous.bytes);
+            return previous.asset;
+        }
+        return null;
+    }
+
+    /**
+     * Measures a resident asset again after its GPU bytes changed.
+     */
+    void resize(String path) {
+        entries.computeIfPresent(path, (key, entry) -> {
+            long bytes = sizer.applyAsLong(entry.asset);
+            residentBytes.addAndGet(bytes - entry.bytes);
+            entry.bytes = bytes;
+            return entry;
+        });
+    }
+
+    T remove(String path) {
+        Entry<T> entry = entries.remove(path);
+        if (entry == null) {
+            return null;
+        }
+        residentBytes.addAndGet(-entry.bytes);
+        return entry.asset;
+    }
+
+    void acquire(String path) {
+        references.merge(path, 1, Integer::sum);
+    }
+
+    void release(String path) {
+        references.computeIfPresent(path, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    boolean isReferenced(String path) {
+        return references.containsKey(path);
+    }
+
+    /**
+     * Returns the path of the least recently used asset nobody references, or {@code null} if there is none.
+     */
+    String leastRecentlyUsed() {
+        String oldest = null;
+        long oldestTime = Long.MAX_VALUE;
+        for (Map.Entry<String, Entry<T>> entry : entries.entrySet()) {
+            if (entry.getValue().lastUsed < oldestTime && !isReferenced(entry.getKey())) {
+                oldest = entry.getKey();
+                oldestTime = entry.getValue().lastUsed;
+            }
+        }
+        return oldest;
+    }
+
+    long lastUsed(String path) {
+        Entry<T> entry = entries.get(path);
+        return entry != null ? entry.lastUsed : Long.MAX_VALUE;
+    }
+
+    long residentBytes() {
+        return residentBytes.get();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    List<String> paths() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    void clear() {
+        entries.clear();
+        references.clear();
+        residentBytes.set(0);
+    }
+}
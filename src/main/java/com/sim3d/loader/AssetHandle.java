@@ -0,0 +1,49 @@
+package com.sim3d.loader;
+
+import java.util.function.Supplier;
+
+/**
+ * A counted reference on an asset managed by {@link AssetManager}. While any handle on an asset is held, the asset
+ * is never evicted; it may still be loading, in which case {@link #get()} returns {@code null}.
+ */
+public final class AssetHandle<T> implements AutoCloseable {
+    private final String path;
+    private final Supplier<T> lookup;
+    private final Runnable releaser;
+    private boolean released;
+
+    AssetHandle(String path, Supplier<T> lookup, Runnable releaser) {
+        this.path = path;
+        this.lookup = lookup;
+        this.releaser = releaser;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the asset, or {@code null} while it is still loading.
+     */
+    public T get() {
+        if (released) {
+            throw new IllegalStateException("Asset handle already released: " + path);
+        }
+        return lookup.get();
+    }
+
+    /**
+     * Drops the reference; later calls do nothing.
+     */
+    public void release() {
+        if (!released) {
+            released = true;
+            releaser.run();
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
@@ -1,23 +1,76 @@
 package com.sim3d.loader;
 
+import com.sim3d.engine.Settings;
 import com.sim3d.graphics.Texture;
+import com.sim3d.graphics.TextureArray;
+import com.sim3d.graphics.TextureArrayBuilder;
+import com.sim3d.graphics.TextureData;
+import com.sim3d.graphics.TextureLayers;
 import com.sim3d.graphics.TextureLoader;
+import com.sim3d.graphics.TextureStreamer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * Loads and caches models and textures. Besides the blocking {@code get}/{@code load} methods, assets can be
+ * requested in the background: files are read on virtual threads, parsed and decoded on the common pool, and the
+ * GL objects are created on the render thread by {@link #processUploads()} within a per-frame time budget. Texture
+ * pixels are streamed to the GPU over the following frames by a {@link TextureStreamer}, finer mip levels only once
+ * the renderer reports that objects need them.
+ *
+ * <p>The manager owns every cached asset, including the textures models use. Assets stay resident while an
+ * {@link AssetHandle} references them; once the GPU bytes of all resident assets exceed the configured budget, the
+ * least recently used unreferenced ones are freed. Texture arrays count towards the budget but are freed by their
+ * owner only.
+ */
 public class AssetManager {
     private static final Logger logger = LoggerFactory.getLogger(AssetManager.class);
     private static AssetManager instance;
 
-    private final Map<String, Model> modelCache = new ConcurrentHashMap<>();
-    private final Map<String, Texture> textureCache = new ConcurrentHashMap<>();
+    private final AssetCache<Model> modelCache = new AssetCache<>(Model::getGpuBytes);
+    private final AssetCache<Texture> textureCache = new AssetCache<>(Texture::getGpuBytes);
+    // Textures each resident model holds a reference on, released when the model leaves the cache
+    private final Map<String, List<String>> modelTextures = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Model>> pendingModels = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Texture>> pendingTextures = new ConcurrentHashMap<>();
+    // Texture arrays handed out by requestTextureArrays, from allocation until their owner cleans them up
+    private final Set<TextureArray> textureArrays = ConcurrentHashMap.newKeySet();
 
-    private AssetManager() {}
+    private final ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final BlockingQueue<Runnable> uploadQueue;
+    private final TextureStreamer textureStreamer;
+    private final AssetMetrics metrics = new AssetMetrics(modelCache::residentBytes,
+        () -> textureCache.residentBytes() + textureArrayBytes());
+
+    private AssetManager() {
+        uploadQueue = new ArrayBlockingQueue<>(Math.max(1, Settings.getInstance().getAssets().uploadQueueSize));
+        Settings.AssetSettings settings = Settings.getInstance().getAssets();
+        textureStreamer = new TextureStreamer(settings.textureStreamKb * 1024,
+            settings.streamMips ? settings.mipTailSize : 0);
+        textureStreamer.setResidencyListener(texture -> textureCache.resize(texture.getPath()));
+        metrics.register();
+    }
 
     public static synchronized AssetManager getInstance() {
         if (instance == null) {
@@ -26,56 +79,414 @@ public class AssetManager {
         return instance;
     }
 
+    /**
+     * Hit rates, load latencies and memory use of this manager, also published over JMX.
+     */
+    public AssetMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Streams texture pixels to the GPU; the renderer reports to it how large textures appear on screen.
+     */
+    public TextureStreamer getTextureStreamer() {
+        return textureStreamer;
+    }
+
+    /**
+     * Returns the model, loading it first if needed. Must be called on the render thread; see
+     * {@link #loadModel(String, String)}.
+     */
     public Model getModel(String path) {
-        Model cached = modelCache.get(path);
-        if (cached != null) {
-            logger.debug("Returning cached model: {}", path);
-            return cached;
+        return loadModel(path, null);
+    }
+
+    /**
+     * Keeps a model and its textures resident until the handle is released, loading it in the background if
+     * needed.
+     */
+    public AssetHandle<Model> acquireModel(String path, String texturePath) {
+        String key = modelKey(path, texturePath);
+        modelCache.acquire(key);
+        requestModel(path, texturePath);
+        return new AssetHandle<>(path, () -> getModelIfReady(path, texturePath), () -> modelCache.release(key));
+    }
+
+    /**
+     * Keeps a texture resident until the handle is released, loading it in the background if needed.
+     */
+    public AssetHandle<Texture> acquireTexture(String path) {
+        textureCache.acquire(path);
+        requestTexture(path);
+        return new AssetHandle<>(path, () -> {
+            Texture texture = textureCache.get(path);
+            if (texture == null && !pendingTextures.containsKey(path)) {
+                requestTexture(path);
+            }
+            return texture;
+        }, () -> textureCache.release(path));
+    }
+
+    /**
+     * Returns the model if it is loaded; otherwise starts loading it in the background and returns {@code null},
+     * so callers can draw a placeholder until it is ready. Called per object and frame, so only the load it starts
+     * counts towards the metrics, not the lookup itself.
+     */
+    public Model getModelIfReady(String path, String texturePath) {
+        String key = modelKey(path, texturePath);
+        Model cached = modelCache.get(key);
+        if (cached == null && !pendingModels.containsKey(key)) {
+            requestModel(path, texturePath);
         }
-        return loadModel(path);
+        return cached;
     }
 
-    public Model loadModel(String path) {
-        return loadModel(path, null);
+    /**
+     * Loads a model and its textures in the background. The future completes on the render thread once the model
+     * is uploaded and cached. Loads are single-flight: all requests for a model already in flight share its future.
+     * Models are cached per texture variant, as the texture is set on the model itself.
+     */
+    public CompletableFuture<Model> requestModel(String path, String texturePath) {
+        return loadAsync(AssetMetrics.Kind.MODEL, modelKey(path, texturePath), modelCache, pendingModels,
+            key -> startModelLoad(path, texturePath),
+            (key, loaded) -> storeModel(key, loaded.model(), loaded.texturePaths()));
     }
 
-    public Model loadModel(String path, String texturePath) {
-        logger.info("Loading model: {}", path);
-        if (texturePath != null) {
-            logger.info("With texture: {}", texturePath);
+    /**
+     * Returns a loaded variant of the model, preferring the one with {@code texturePath}, without marking it used
+     * or starting a load. For checks such as culling that need its bounds but may not draw it.
+     */
+    public Model peekModel(String path, String texturePath) {
+        Model model = modelCache.peek(modelKey(path, texturePath));
+        return model != null ? model : modelCache.peek(modelKey(path, null));
+    }
+
+    private static String modelKey(String path, String texturePath) {
+        return texturePath == null || texturePath.isEmpty() ? path : path + "|" + texturePath;
+    }
+
+    /**
+     * Loads a texture in the background, as {@link #requestModel(String, String)}.
+     */
+    public CompletableFuture<Texture> requestTexture(String path) {
+        return loadAsync(AssetMetrics.Kind.TEXTURE, path, textureCache, pendingTextures, this::startTextureLoad,
+            textureCache::put);
+    }
+
+    /**
+     * Loads textures in the background and packs them into texture arrays grouped by size and format, so objects
+     * using any of them can be drawn without texture switches. The arrays are not cached; the caller owns the
+     * result and frees it with {@link TextureLayers#cleanup()}. Until then they count towards the GPU budget, but
+     * are never evicted.
+     */
+    public CompletableFuture<TextureLayers> requestTextureArrays(Collection<String> paths) {
+        List<CompletableFuture<TextureData>> decoded = new ArrayList<>();
+        for (String path : new LinkedHashSet<>(paths)) {
+            decoded.add(CompletableFuture.supplyAsync(() -> metrics.time(AssetMetrics.Kind.TEXTURE,
+                    AssetMetrics.Stage.READ, () -> TextureLoader.read(path)), ioExecutor)
+                .thenApplyAsync(bytes -> {
+                    try (bytes) {
+                        return metrics.time(AssetMetrics.Kind.TEXTURE, AssetMetrics.Stage.DECODE,
+                            () -> TextureLoader.decode(bytes, path));
+                    }
+                }, ForkJoinPool.commonPool()));
+        }
+
+        int maxGroupedSize = Settings.getInstance().getAssets().maxArrayTextureSize;
+        return CompletableFuture.allOf(decoded.toArray(CompletableFuture[]::new)).thenCompose(ignored -> {
+            TextureArrayBuilder builder = new TextureArrayBuilder(maxGroupedSize);
+            builder.setAllocationListener(textureArrays::add);
+            long bytes = 0;
+            for (CompletableFuture<TextureData> data : decoded) {
+                builder.add(data.join());
+                bytes += data.join().getByteCount();
+            }
+            if (Settings.getInstance().getAssets().streamTextures) {
+                return enqueueStreamed(AssetMetrics.Kind.TEXTURE, bytes, () -> builder.build(textureStreamer));
+            }
+            return enqueueUpload(AssetMetrics.Kind.TEXTURE, bytes, builder::build);
+        });
+    }
+
+    /**
+     * Runs waiting GL uploads of background loads on the calling render thread until the per-frame budget is
+     * spent, streams the next texture pixels, then evicts unreferenced assets if the GPU budget is exceeded. At
+     * least one upload runs per call, so loading always progresses.
+     */
+    public void processUploads() {
+        long budget = (long) (Settings.getInstance().getAssets().uploadBudgetMs * 1_000_000L);
+        long start = System.nanoTime();
+        Runnable upload;
+        while ((upload = uploadQueue.poll()) != null) {
+            upload.run();
+            if (System.nanoTime() - start >= budget) {
+                break;
+            }
         }
+        textureStreamer.process();
+        evictIfOverBudget();
+    }
+
+    /**
+     * GPU bytes of all resident models and textures, including texture arrays that are built or being built.
+     */
+    public long getResidentBytes() {
+        return modelCache.residentBytes() + textureCache.residentBytes() + textureArrayBytes();
+    }
 
-        Model existingModel = modelCache.remove(path);
-        if (existingModel != null) {
-            existingModel.cleanup();
+    private long textureArrayBytes() {
+        textureArrays.removeIf(array -> array.getGpuBytes() == 0);
+        long bytes = 0;
+        for (TextureArray array : textureArrays) {
+            bytes += array.getGpuBytes();
         }
+        return bytes;
+    }
 
-        Model model = loadModelInternal(path);
-        if (model != null) {
-            // Load texture if specified
-            if (texturePath != null && !texturePath.isEmpty()) {
-                Texture texture = getTexture(texturePath);
-                model.setTexture(texture);
-                model.setTexturePath(texturePath);
+    /**
+     * Drops mip levels no object has needed for a while, then frees least recently used models and textures nobody
+     * holds a handle to until the resident GPU bytes fit the budget. Textures used by a resident model count as
+     * referenced, so they go after the model.
+     */
+    private void evictIfOverBudget() {
+        long budget = Settings.getInstance().getAssets().gpuBudgetMb * 1024L * 1024;
+        if (getResidentBytes() > budget) {
+            textureStreamer.trimMips(getResidentBytes() - budget);
+        }
+        while (getResidentBytes() > budget) {
+            String model = modelCache.leastRecentlyUsed();
+            String texture = textureCache.leastRecentlyUsed();
+            if (model == null && texture == null) {
+                logger.debug("Resident assets exceed the GPU budget but all are referenced");
+                return;
             }
-            
-            modelCache.put(path, model);
-            logger.info("Cached model: {}", path);
+            if (model != null && (texture == null || modelCache.lastUsed(model) <= textureCache.lastUsed(texture))) {
+                logger.info("Evicting model: {}", model);
+                removeModel(model).cleanup();
+            } else {
+                logger.info("Evicting texture: {}", texture);
+                textureCache.remove(texture).cleanup();
+            }
+        }
+    }
+
+    /**
+     * Caches a model that already holds references on {@code texturePaths}.
+     */
+    private void storeModel(String path, Model model, List<String> texturePaths) {
+        modelTextures.put(path, texturePaths);
+        modelCache.put(path, model);
+    }
+
+    private Model removeModel(String path) {
+        Model model = modelCache.remove(path);
+        List<String> texturePaths = modelTextures.remove(path);
+        if (texturePaths != null) {
+            texturePaths.forEach(textureCache::release);
         }
         return model;
     }
 
-    private Model loadModelInternal(String path) {
-        if (path.toLowerCase().endsWith(".obj")) {
-            if (isFilePath(path)) {
-                return ObjLoader.loadFromFile(path);
+    private <T, L> CompletableFuture<T> loadAsync(AssetMetrics.Kind kind, String path, AssetCache<T> cache,
+                                                  Map<String, CompletableFuture<T>> pending,
+                                                  Function<String, CompletableFuture<L>> loader,
+                                                  BiConsumer<String, L> store) {
+        T cached = cache.get(path);
+        if (cached != null) {
+            metrics.hit(kind);
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<T> inFlight = pending.putIfAbsent(path, result);
+        if (inFlight != null) {
+            metrics.coalesced(kind);
+            return inFlight;
+        }
+
+        metrics.miss(kind);
+        long start = System.nanoTime();
+        loader.apply(path).whenComplete((loaded, error) -> {
+            if (loaded != null) {
+                metrics.record(kind, AssetMetrics.Stage.LOAD, System.nanoTime() - start);
+            } else {
+                metrics.failure(kind);
+            }
+            // Cache before leaving the pending map, so the asset is always found in one of them
+            if (loaded != null) {
+                store.accept(path, loaded);
+                logger.info("Cached {}", path);
+            }
+            T asset = loaded != null ? cache.get(path) : null;
+            pending.remove(path, result);
+            if (error != null) {
+                logger.warn("Failed to load {} in background", path, error);
+                result.completeExceptionally(error);
             } else {
-                return ObjLoader.load(path);
+                result.complete(asset);
+            }
+        });
+        return result;
+    }
+
+    private record LoadedModel(Model model, List<String> texturePaths) {}
+
+    private CompletableFuture<LoadedModel> startModelLoad(String path, String texturePath) {
+        logger.info("Loading model: {}", path);
+        if (texturePath != null) {
+            logger.info("With texture: {}", texturePath);
+        }
+        if (!path.toLowerCase().endsWith(".obj")) {
+            logger.warn("Unsupported model format: {}", path);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        boolean fromFile = isFilePath(path);
+        return CompletableFuture.supplyAsync(() -> metrics.time(AssetMetrics.Kind.MODEL, AssetMetrics.Stage.READ,
+                () -> MeshCache.readSource(path, fromFile)), ioExecutor)
+            .thenApplyAsync(source -> {
+                if (source == null) {
+                    return null;
+                }
+                try (source) {
+                    return metrics.time(AssetMetrics.Kind.MODEL, AssetMetrics.Stage.PARSE,
+                        () -> MeshCache.load(source.buffer(), path, fromFile));
+                }
+            }, ForkJoinPool.commonPool())
+            .thenCompose(data -> data != null
+                ? enqueueUpload(AssetMetrics.Kind.MODEL, data.byteCount(), data::upload)
+                : CompletableFuture.completedFuture(null))
+            .thenCompose(model -> model != null ? requestTextures(model, texturePath)
+                : CompletableFuture.completedFuture(null));
+    }
+
+    private CompletableFuture<Texture> startTextureLoad(String path) {
+        logger.info("Loading texture: {}", path);
+        return CompletableFuture.supplyAsync(() -> metrics.time(AssetMetrics.Kind.TEXTURE, AssetMetrics.Stage.READ,
+                () -> TextureLoader.read(path)), ioExecutor)
+            .thenApplyAsync(bytes -> {
+                try (bytes) {
+                    return metrics.time(AssetMetrics.Kind.TEXTURE, AssetMetrics.Stage.DECODE,
+                        () -> TextureLoader.decode(bytes, path));
+                }
+            }, ForkJoinPool.commonPool())
+            .thenCompose(data -> Settings.getInstance().getAssets().streamTextures
+                ? enqueueStreamed(AssetMetrics.Kind.TEXTURE, data.getByteCount(), () -> textureStreamer.stream(data))
+                : enqueueUpload(AssetMetrics.Kind.TEXTURE, data.getByteCount(), data::upload));
+    }
+
+    /**
+     * Requests the material and model textures of a freshly uploaded model; the model is only handed out once they
+     * are attached, so it never shows up untextured first. The model's references on the textures are taken right
+     * away, so none is evicted while the others are still loading.
+     */
+    private CompletableFuture<LoadedModel> requestTextures(Model model, String texturePath) {
+        List<CompletableFuture<Void>> textures = new ArrayList<>();
+        List<String> texturePaths = new ArrayList<>();
+        for (Material material : model.getMaterials()) {
+            if (material != null && material.getDiffuseTexturePath() != null && material.getDiffuseTexture() == null) {
+                texturePaths.add(material.getDiffuseTexturePath());
+                textureCache.acquire(material.getDiffuseTexturePath());
+                textures.add(requestTexture(material.getDiffuseTexturePath())
+                    .exceptionally(error -> null)
+                    .thenAccept(material::setDiffuseTexture));
             }
         }
+        if (texturePath != null && !texturePath.isEmpty()) {
+            texturePaths.add(texturePath);
+            textureCache.acquire(texturePath);
+            textures.add(requestTexture(texturePath)
+                .exceptionally(error -> null)
+                .thenAccept(texture -> {
+                    model.setTexture(texture);
+                    model.setTexturePath(texturePath);
+                }));
+        }
+        return CompletableFuture.allOf(textures.toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> new LoadedModel(model, texturePaths));
+    }
 
-        logger.warn("Unsupported model format: {}", path);
-        return null;
+    /**
+     * Queues {@code upload} for {@link #processUploads()}. Adding blocks while the queue is full, which happens on
+     * a virtual thread so the pool that produced the data is not held up. {@code bytes} of loaded data count as
+     * resident CPU memory until the upload ran.
+     */
+    private <T> CompletableFuture<T> enqueueUpload(AssetMetrics.Kind kind, long bytes, Supplier<T> upload) {
+        return enqueueStreamed(kind, bytes, () -> CompletableFuture.completedFuture(upload.get()));
+    }
+
+    /**
+     * As {@link #enqueueUpload}, for uploads that start on the render thread and finish in later frames. The
+     * upload time spans all of them.
+     */
+    private <T> CompletableFuture<T> enqueueStreamed(AssetMetrics.Kind kind, long bytes,
+                                                     Supplier<CompletableFuture<T>> upload) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        metrics.addPendingBytes(kind, bytes);
+        Runnable task = () -> {
+            long start = System.nanoTime();
+            CompletableFuture<T> uploaded;
+            try {
+                uploaded = upload.get();
+            } catch (RuntimeException e) {
+                uploaded = CompletableFuture.failedFuture(e);
+            }
+            uploaded.whenComplete((asset, error) -> {
+                metrics.record(kind, AssetMetrics.Stage.UPLOAD, System.nanoTime() - start);
+                metrics.addPendingBytes(kind, -bytes);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(asset);
+                }
+            });
+        };
+        ioExecutor.execute(() -> {
+            try {
+                uploadQueue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    public Model loadModel(String path) {
+        return loadModel(path, null);
+    }
+
+    /**
+     * Returns the model, loading it first if needed, and blocks until it is ready. Joins a load already in flight
+     * instead of starting another, and never replaces a cached model. Must be called on the render thread, which
+     * runs queued uploads while it waits.
+     */
+    public Model loadModel(String path, String texturePath) {
+        return await(requestModel(path, texturePath), path);
+    }
+
+    /**
+     * Waits for a background load on the render thread. Queued uploads and texture streaming run meanwhile, since
+     * the load may be waiting for one of them.
+     */
+    private <T> T await(CompletableFuture<T> future, String path) {
+        while (!future.isDone()) {
+            textureStreamer.process();
+            try {
+                Runnable upload = uploadQueue.poll(1, TimeUnit.MILLISECONDS);
+                if (upload != null) {
+                    upload.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CancellationException | CompletionException e) {
+            logger.warn("Could not load {}", path);
+            return null;
+        }
     }
 
     private boolean isFilePath(String path) {
@@ -92,69 +503,56 @@ public class AssetManager {
         return false;
     }
 
+    /**
+     * Starts background loads for all models not loaded yet.
+     */
     public void preloadModels(List<String> paths) {
         logger.info("Preloading {} models", paths.size());
         for (String path : paths) {
-            if (!modelCache.containsKey(path)) {
-                loadModel(path);
-            }
+            requestModel(path, null);
         }
     }
 
     public boolean hasModel(String path) {
-        return modelCache.containsKey(path);
+        return modelCache.contains(path);
     }
 
+    /**
+     * Returns the texture, loading it first if needed; as {@link #loadModel(String, String)}.
+     */
     public Texture getTexture(String path) {
-        Texture cached = textureCache.get(path);
-        if (cached != null) {
-            logger.debug("Returning cached texture: {}", path);
-            return cached;
-        }
-        return loadTexture(path);
+        return await(requestTexture(path), path);
     }
 
     public Texture loadTexture(String path) {
-        logger.info("Loading texture: {}", path);
-
-        Texture existingTexture = textureCache.remove(path);
-        if (existingTexture != null) {
-            existingTexture.cleanup();
-        }
-
-        Texture texture = TextureLoader.load(path);
-        if (texture != null) {
-            textureCache.put(path, texture);
-            logger.info("Cached texture: {}", path);
-        }
-        return texture;
+        return getTexture(path);
     }
 
+    /**
+     * Starts background loads for all textures not loaded yet.
+     */
     public void preloadTextures(List<String> paths) {
         logger.info("Preloading {} textures", paths.size());
         for (String path : paths) {
-            if (!textureCache.containsKey(path)) {
-                loadTexture(path);
-            }
+            requestTexture(path);
         }
     }
 
     public boolean hasTexture(String path) {
-        return textureCache.containsKey(path);
+        return textureCache.contains(path);
     }
 
     public void clearModelCache() {
         logger.info("Clearing model cache ({} models)", modelCache.size());
-        for (Model model : modelCache.values()) {
-            model.cleanup();
+        for (String path : modelCache.paths()) {
+            removeModel(path).cleanup();
         }
-        modelCache.clear();
     }
 
     public void clearTextureCache() {
         logger.info("Clearing texture cache ({} textures)", textureCache.size());
-        for (Texture texture : textureCache.values()) {
-            texture.cleanup();
+        for (String path : textureCache.paths()) {
+            textureCache.remove(path).cleanup();
         }
         textureCache.clear();
     }
@@ -167,6 +565,12 @@ public class AssetManager {
 
     public void cleanup() {
         logger.info("Cleaning up AssetManager");
+        // Background loads still in flight are abandoned; their uploads will never run
+        pendingModels.values().forEach(future -> future.cancel(false));
+        pendingTextures.values().forEach(future -> future.cancel(false));
+        uploadQueue.clear();
+        textureStreamer.cleanup();
         clearCache();
+        metrics.unregister();
     }
 }
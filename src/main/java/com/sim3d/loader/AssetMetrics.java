@@ -0,0 +1,189 @@
+package com.sim3d.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Counters, latency histograms and memory gauges of {@link AssetManager}, per asset type. A request served from
+ * the cache is a hit, one that starts a load is a miss and one that joins a load in flight is coalesced. The
+ * stages of a load are timed separately: reading the source on an I/O thread, parsing a model or decoding a
+ * texture, and the GL upload on the render thread; the load latency spans the whole miss. Resident GPU bytes are
+ * those of cached assets and texture arrays, resident CPU bytes those of loaded assets waiting for upload.
+ */
+public final class AssetMetrics implements AssetMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(AssetMetrics.class);
+
+    public static final String OBJECT_NAME = "com.sim3d:type=AssetMetrics";
+
+    public enum Kind { MODEL, TEXTURE }
+
+    public enum Stage { READ, PARSE, DECODE, UPLOAD, LOAD }
+
+    public record TypeSnapshot(long hits, long misses, long coalesced, long failures, double hitRate,
+                               long residentGpuBytes, long residentCpuBytes, LatencyHistogram.Snapshot read,
+                               LatencyHistogram.Snapshot parse, LatencyHistogram.Snapshot decode,
+                               LatencyHistogram.Snapshot upload, LatencyHistogram.Snapshot load) {}
+
+    public record Snapshot(TypeSnapshot models, TypeSnapshot textures, long residentGpuBytes,
+                           long residentCpuBytes) {}
+
+    private static final class TypeMetrics {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final AtomicLong pendingBytes = new AtomicLong();
+        final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+        final LongSupplier residentGpuBytes;
+
+        TypeMetrics(LongSupplier residentGpuBytes) {
+            this.residentGpuBytes = residentGpuBytes;
+            for (int i = 0; i < stages.length; i++) {
+                stages[i] = new LatencyHistogram();
+            }
+        }
+
+        TypeSnapshot snapshot() {
+            long hitCount = hits.sum();
+            long lookups = hitCount + misses.sum() + coalesced.sum();
+            return new TypeSnapshot(hitCount, misses.sum(), coalesced.sum(), failures.sum(),
+                lookups > 0 ? hitCount / (double) lookups : 0, residentGpuBytes.getAsLong(), pendingBytes.get(),
+                stages[Stage.READ.ordinal()].snapshot(), stages[Stage.PARSE.ordinal()].snapshot(),
+                stages[Stage.DECODE.ordinal()].snapshot(), stages[Stage.UPLOAD.ordinal()].snapshot(),
+                stages[Stage.LOAD.ordinal()].snapshot());
+        }
+
+        void reset() {
+            hits.reset();
+            misses.reset();
+            coalesced.reset();
+            failures.reset();
+            for (LatencyHistogram stage : stages) {
+                stage.reset();
+            }
+        }
+    }
+
+    private final TypeMetrics models;
+    private final TypeMetrics textures;
+    private ObjectName registeredName;
+
+    AssetMetrics(LongSupplier modelGpuBytes, LongSupplier textureGpuBytes) {
+        this.models = new TypeMetrics(modelGpuBytes);
+        this.textures = new TypeMetrics(textureGpuBytes);
+    }
+
+    private TypeMetrics of(Kind kind) {
+        return kind == Kind.MODEL ? models : textures;
+    }
+
+    void hit(Kind kind) {
+        of(kind).hits.increment();
+    }
+
+    void miss(Kind kind) {
+        of(kind).misses.increment();
+    }
+
+    void coalesced(Kind kind) {
+        of(kind).coalesced.increment();
+    }
+
+    void failure(Kind kind) {
+        of(kind).failures.increment();
+    }
+
+    void record(Kind kind, Stage stage, long nanos) {
+        of(kind).stages[stage.ordinal()].record(nanos);
+    }
+
+    <T> T time(Kind kind, Stage stage, Supplier<T> task) {
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            record(kind, stage, System.nanoTime() - start);
+        }
+    }
+
+    void addPendingBytes(Kind kind, long bytes) {
+        of(kind).pendingBytes.addAndGet(bytes);
+    }
+
+    /**
+     * All counters, latencies and gauges as of now. Counters are read one after another while loads go on, so they
+     * may be off by the few events in between.
+     */
+    @Override
+    public Snapshot getSnapshot() {
+        TypeSnapshot modelSnapshot = models.snapshot();
+        TypeSnapshot textureSnapshot = textures.snapshot();
+        return new Snapshot(modelSnapshot, textureSnapshot,
+            modelSnapshot.residentGpuBytes() + textureSnapshot.residentGpuBytes(),
+            modelSnapshot.residentCpuBytes() + textureSnapshot.residentCpuBytes());
+    }
+
+    @Override
+    public double getModelHitRate() {
+        return models.snapshot().hitRate();
+    }
+
+    @Override
+    public double getTextureHitRate() {
+        return textures.snapshot().hitRate();
+    }
+
+    @Override
+    public long getResidentGpuBytes() {
+        return models.residentGpuBytes.getAsLong() + textures.residentGpuBytes.getAsLong();
+    }
+
+    @Override
+    public long getResidentCpuBytes() {
+        return models.pendingBytes.get() + textures.pendingBytes.get();
+    }
+
+    /**
+     * Clears the counters and histograms; the gauges keep tracking the current state.
+     */
+    @Override
+    public void reset() {
+        models.reset();
+        textures.reset();
+    }
+
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            logger.warn("Failed to register asset metrics MBean", e);
+        }
+    }
+
+    void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            logger.debug("Failed to unregister asset metrics MBean", e);
+        }
+        registeredName = null;
+    }
+}
@@ -0,0 +1,18 @@
+package com.sim3d.loader;
+
+/**
+ * JMX view of {@link AssetMetrics}, registered as {@value AssetMetrics#OBJECT_NAME}.
+ */
+public interface AssetMetricsMXBean {
+    AssetMetrics.Snapshot getSnapshot();
+
+    double getModelHitRate();
+
+    double getTextureHitRate();
+
+    long getResidentGpuBytes();
+
+    long getResidentCpuBytes();
+
+    void reset();
+}
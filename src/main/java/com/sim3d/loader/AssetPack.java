@@ -0,0 +1,222 @@
+package com.sim3d.loader;
+
+import com.sim3d.engine.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single archive of resources, mapped once and read without copying. Resource reads look in the pack first and
+ * fall back to the classpath, so a pack only needs to hold the assets that should be served from it.
+ *
+ * <p>Layout, little-endian: a header of magic, version, entry count and a reserved int; then the table of contents
+ * sorted by path hash, {@value #ENTRY_BYTES} bytes per entry: 64-bit FNV-1a hash of the path, data offset, stored
+ * length, original length, compression and padding; then the data of each entry, aligned to
+ * {@value #DATA_ALIGNMENT} bytes. Stored entries are returned as slices of the mapping; LZ4 entries are
+ * decompressed into pooled native buffers.
+ */
+public final class AssetPack {
+    private static final Logger logger = LoggerFactory.getLogger(AssetPack.class);
+
+    static final int MAGIC = 0x50443353;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 * Integer.BYTES;
+    static final int ENTRY_BYTES = 2 * Long.BYTES + 4 * Integer.BYTES;
+    static final int DATA_ALIGNMENT = 16;
+    static final int STORED = 0;
+    static final int LZ4 = 1;
+
+    private static volatile AssetPack instance;
+
+    private final String name;
+    private final MappedByteBuffer mapping;
+    private final long[] hashes;
+    private final int[] offsets;
+    private final int[] storedLengths;
+    private final int[] lengths;
+    private final int[] compressions;
+
+    private AssetPack(String name, MappedByteBuffer mapping, long[] hashes, int[] offsets, int[] storedLengths,
+                      int[] lengths, int[] compressions) {
+        this.name = name;
+        this.mapping = mapping;
+        this.hashes = hashes;
+        this.offsets = offsets;
+        this.storedLengths = storedLengths;
+        this.lengths = lengths;
+        this.compressions = compressions;
+    }
+
+    /**
+     * The pack named by the {@code assets.packFile} setting, mapped on first use. If it is missing or unreadable,
+     * an empty pack is returned and every read goes to the classpath.
+     */
+    public static AssetPack getInstance() {
+        AssetPack pack = instance;
+        if (pack == null) {
+            synchronized (AssetPack.class) {
+                pack = instance;
+                if (pack == null) {
+                    pack = open(Settings.getInstance().getAssets().packFile);
+                    instance = pack;
+                }
+            }
+        }
+        return pack;
+    }
+
+    static AssetPack open(String file) {
+        if (file == null || file.isEmpty() || !Files.isRegularFile(Path.of(file))) {
+            logger.debug("No asset pack at {}, reading resources from the classpath", file);
+            return empty();
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                logger.warn("Asset pack too large to map: {} ({} bytes)", file, channel.size());
+                return empty();
+            }
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            AssetPack pack = read(file, mapping);
+            logger.info("Mapped asset pack {} with {} entries", file, pack.size());
+            return pack;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to open asset pack: {}", file, e);
+            return empty();
+        }
+    }
+
+    private static AssetPack read(String file, MappedByteBuffer mapping) {
+        ByteBuffer header = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not an asset pack");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported asset pack version " + header.getInt(4));
+        }
+        int count = header.getInt(8);
+        if (count < 0 || (long) HEADER_BYTES + (long) count * ENTRY_BYTES > mapping.capacity()) {
+            throw new IllegalArgumentException("Truncated table of contents");
+        }
+
+        long[] hashes = new long[count];
+        int[] offsets = new int[count];
+        int[] storedLengths = new int[count];
+        int[] lengths = new int[count];
+        int[] compressions = new int[count];
+        for (int i = 0, at = HEADER_BYTES; i < count; i++, at += ENTRY_BYTES) {
+            hashes[i] = header.getLong(at);
+            long offset = header.getLong(at + 8);
+            storedLengths[i] = header.getInt(at + 16);
+            lengths[i] = header.getInt(at + 20);
+            compressions[i] = header.getInt(at + 24);
+            if (offset < 0 || storedLengths[i] < 0 || lengths[i] < 0 || offset + storedLengths[i] > mapping.capacity()
+                    || (i > 0 && hashes[i] <= hashes[i - 1])) {
+                throw new IllegalArgumentException("Corrupt table of contents entry " + i);
+            }
+            offsets[i] = (int) offset;
+        }
+        return new AssetPack(file, mapping, hashes, offsets, storedLengths, lengths, compressions);
+    }
+
+    private static AssetPack empty() {
+        return new AssetPack(null, null, new long[0], new int[0], new int[0], new int[0], new int[0]);
+    }
+
+    /**
+     * Reads a resource from the pack, or from the classpath if the pack does not hold it. Returns {@code null} if
+     * neither has it.
+     */
+    public AssetBytes read(String resourcePath) {
+        AssetBytes bytes = readPacked(resourcePath);
+        return bytes != null ? bytes : readClasspath(resourcePath);
+    }
+
+    /**
+     * Reads a resource from the pack only, or returns {@code null} if it is not packed or cannot be read.
+     */
+    public AssetBytes readPacked(String resourcePath) {
+        int entry = find(hash(resourcePath));
+        if (entry < 0) {
+            return null;
+        }
+        ByteBuffer stored = mapping.slice(offsets[entry], storedLengths[entry]);
+        if (compressions[entry] == STORED) {
+            return AssetBytes.of(stored);
+        }
+        if (compressions[entry] != LZ4) {
+            logger.warn("Unknown compression {} for {} in asset pack {}", compressions[entry], resourcePath, name);
+            return null;
+        }
+
+        ByteBuffer target = NativeBufferPool.acquire(lengths[entry]);
+        try {
+            if (Lz4Block.decompress(stored, target) != lengths[entry]) {
+                throw new IllegalArgumentException("Decompressed length mismatch");
+            }
+            return AssetBytes.pooled(target);
+        } catch (IllegalArgumentException e) {
+            NativeBufferPool.release(target);
+            logger.warn("Failed to decompress {} from asset pack {}", resourcePath, name, e);
+            return null;
+        }
+    }
+
+    private static AssetBytes readClasspath(String resourcePath) {
+        try (InputStream is = AssetPack.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            return is != null ? AssetBytes.of(ByteBuffer.wrap(is.readAllBytes())) : null;
+        } catch (IOException e) {
+            logger.warn("Failed to read resource: {}", resourcePath, e);
+            return null;
+        }
+    }
+
+    public boolean contains(String resourcePath) {
+        return find(hash(resourcePath)) >= 0;
+    }
+
+    public int size() {
+        return hashes.length;
+    }
+
+    private int find(long hash) {
+        int low = 0;
+        int high = hashes.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (hashes[mid] < hash) {
+                low = mid + 1;
+            } else if (hashes[mid] > hash) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * FNV-1a of the UTF-8 path, with a leading slash dropped and backslashes treated as slashes.
+     */
+    static long hash(String resourcePath) {
+        String normalized = resourcePath.replace('\\', '/');
+        if (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : normalized.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,119 @@
+package com.sim3d.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes an {@link AssetPack} from a directory tree; every file is stored under its path relative to the root,
+ * so resource paths resolve the same way they do on the classpath.
+ *
+ * <p>Usage: {@code AssetPackBuilder <resource dir> <pack file> [--compress]}. With {@code --compress}, entries are
+ * LZ4 compressed when that saves at least an eighth of their size.
+ */
+public final class AssetPackBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(AssetPackBuilder.class);
+
+    private AssetPackBuilder() {}
+
+    private record Entry(String path, long hash, byte[] data, int length, int compression) {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: AssetPackBuilder <resource dir> <pack file> [--compress]");
+            System.exit(1);
+        }
+        boolean compress = args.length > 2 && args[2].equals("--compress");
+        build(Path.of(args[0]), Path.of(args[1]), compress);
+    }
+
+    public static void build(Path root, Path packFile, boolean compress) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            String path = root.relativize(file).toString().replace('\\', '/');
+            entries.add(entry(path, Files.readAllBytes(file), compress));
+        }
+        entries.sort(Comparator.comparingLong(Entry::hash));
+        for (int i = 1; i < entries.size(); i++) {
+            if (entries.get(i).hash() == entries.get(i - 1).hash()) {
+                throw new IOException("Path hash collision between " + entries.get(i - 1).path() + " and "
+                    + entries.get(i).path());
+            }
+        }
+        write(packFile, entries);
+    }
+
+    private static Entry entry(String path, byte[] data, boolean compress) {
+        long hash = AssetPack.hash(path);
+        if (compress) {
+            byte[] compressed = new byte[Lz4Block.maxCompressedLength(data.length)];
+            int compressedLength = Lz4Block.compress(data, data.length, compressed);
+            if (compressedLength <= data.length - data.length / 8) {
+                byte[] stored = new byte[compressedLength];
+                System.arraycopy(compressed, 0, stored, 0, compressedLength);
+                return new Entry(path, hash, stored, data.length, AssetPack.LZ4);
+            }
+        }
+        return new Entry(path, hash, data, data.length, AssetPack.STORED);
+    }
+
+    private static void write(Path packFile, List<Entry> entries) throws IOException {
+        long dataStart = align(AssetPack.HEADER_BYTES + (long) entries.size() * AssetPack.ENTRY_BYTES);
+        long size = dataStart;
+        long[] offsets = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            offsets[i] = size;
+            size = align(size + entries.get(i).data().length);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Asset pack would exceed 2 GiB: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(AssetPack.MAGIC).putInt(AssetPack.VERSION).putInt(entries.size()).putInt(0);
+        long stored = 0;
+        long original = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            buffer.putLong(entry.hash()).putLong(offsets[i]).putInt(entry.data().length).putInt(entry.length())
+                .putInt(entry.compression()).putInt(0);
+            buffer.put((int) offsets[i], entry.data());
+            stored += entry.data().length;
+            original += entry.length();
+        }
+
+        Path parent = packFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (FileChannel channel = FileChannel.open(packFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        logger.info("Wrote asset pack {} with {} entries: {} bytes stored for {} bytes of assets", packFile,
+            entries.size(), stored, original);
+    }
+
+    private static long align(long offset) {
+        return (offset + AssetPack.DATA_ALIGNMENT - 1) & -AssetPack.DATA_ALIGNMENT;
+    }
+}
@@ -0,0 +1,107 @@
+package com.sim3d.loader;
+
+import com.sim3d.graphics.FloatArrayBuilder;
+import com.sim3d.graphics.IntArrayBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Builds an indexed vertex buffer by welding bit-identical interleaved vertices through an open-addressing
+ * hash table of vertex indices (linear probing, no boxing).
+ */
+final class IndexedMeshBuilder {
+    private static final int EMPTY = -1;
+
+    private final int stride;
+    private final FloatArrayBuilder vertices;
+    private final IntArrayBuilder indices;
+    private int vertexCount;
+    private int[] table;
+    private int mask;
+
+    IndexedMeshBuilder(int stride, int expectedCorners) {
+        this.stride = stride;
+        this.vertices = new FloatArrayBuilder(expectedCorners * stride);
+        this.indices = new IntArrayBuilder(expectedCorners);
+        int capacity = Integer.highestOneBit(Math.max(16, expectedCorners * 2 - 1)) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Appends one corner, reusing an existing vertex if an identical one was added before.
+     */
+    void add(float[] vertex) {
+        int slot = hash(vertex, 0) & mask;
+        while (true) {
+            int candidate = table[slot];
+            if (candidate == EMPTY) {
+                break;
+            }
+            if (matches(candidate, vertex)) {
+                indices.add(candidate);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        vertices.add(vertex, 0, stride);
+        table[slot] = vertexCount;
+        indices.add(vertexCount);
+        vertexCount++;
+
+        if (vertexCount * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+
+    private boolean matches(int candidate, float[] vertex) {
+        float[] data = vertices.array();
+        int offset = candidate * stride;
+        for (int i = 0; i < stride; i++) {
+            if (Float.floatToRawIntBits(data[offset + i]) != Float.floatToRawIntBits(vertex[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hash(float[] source, int offset) {
+        int h = 0;
+        for (int i = 0; i < stride; i++) {
+            h = (h ^ Float.floatToRawIntBits(source[offset + i])) * 0x9E3779B9;
+            h ^= h >>> 16;
+        }
+        return h;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(table, EMPTY);
+        for (int v = 0; v < vertexCount; v++) {
+            int slot = hash(vertices.array(), v * stride) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = v;
+        }
+    }
+
+    FloatArrayBuilder vertices() {
+        return vertices;
+    }
+
+    IntArrayBuilder indices() {
+        return indices;
+    }
+
+    int vertexCount() {
+        return vertexCount;
+    }
+
+    int indexCount() {
+        return indices.size();
+    }
+}
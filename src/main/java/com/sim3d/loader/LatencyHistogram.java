@@ -0,0 +1,97 @@
+package com.sim3d.loader;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram in the style of HdrHistogram: below 64 ns every nanosecond has its own bucket,
+ * above that each power of two is split into {@value #SUB_BUCKETS} buckets, so percentiles are within about 3% of
+ * the recorded values. Durations are capped at 2^40 ns, about 18 minutes.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Latencies in milliseconds at the time of {@link #snapshot()}; all zero if nothing was recorded.
+     */
+    public record Snapshot(long count, double meanMs, double p50Ms, double p90Ms, double p99Ms, double maxMs) {}
+
+    public void record(long nanos) {
+        nanos = Math.max(0, Math.min(nanos, (1L << (MAX_EXPONENT + 1)) - 1));
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public Snapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return new Snapshot(0, 0, 0, 0, 0, 0);
+        }
+        long max = maxNanos.get();
+        return new Snapshot(total, toMillis(totalNanos.get() / (double) count.get()),
+            toMillis(Math.min(percentile(snapshot, total, 0.50), max)),
+            toMillis(Math.min(percentile(snapshot, total, 0.90), max)),
+            toMillis(Math.min(percentile(snapshot, total, 0.99), max)), toMillis(max));
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * The middle of the value range counted in {@code bucket}.
+     */
+    private static double value(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) - 1) / 2.0;
+    }
+
+    private static double percentile(long[] counts, long total, double fraction) {
+        long target = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return value(i);
+            }
+        }
+        return value(counts.length - 1);
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,154 @@
+package com.sim3d.loader;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The LZ4 block format: a stream of sequences, each a run of literals followed by a back reference of at least four
+ * bytes within the previous 64 KiB. The compressor is a single-probe greedy matcher, which is fast and compresses
+ * text assets such as OBJ files well; decompression writes straight into the destination buffer.
+ */
+final class Lz4Block {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 16;
+
+    private Lz4Block() {}
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code src[0, length)} into {@code dst}, which must hold {@link #maxCompressedLength(int)} bytes,
+     * and returns the compressed length.
+     */
+    static int compress(byte[] src, int length, byte[] dst) {
+        int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+        int matchEnd = length - LAST_LITERALS;
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+
+        while (ip < length - MATCH_LIMIT) {
+            int sequence = readInt(src, ip);
+            int slot = (sequence * 0x9E3779B1) >>> (32 - HASH_BITS);
+            int ref = table[slot];
+            table[slot] = ip;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                ip++;
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchEnd && src[ref + matchLength] == src[ip + matchLength]) {
+                matchLength++;
+            }
+            op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, matchLength);
+            ip += matchLength;
+            anchor = ip;
+        }
+        return writeSequence(src, anchor, length - anchor, dst, op, 0, 0);
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literalLength, byte[] dst, int op,
+                                     int offset, int matchLength) {
+        int token = op++;
+        int matchCode = matchLength > 0 ? matchLength - MIN_MATCH : 0;
+        dst[token] = (byte) (Math.min(literalLength, 15) << 4 | Math.min(matchCode, 15));
+        op = writeLength(dst, op, literalLength);
+        System.arraycopy(src, literalStart, dst, op, literalLength);
+        op += literalLength;
+        if (matchLength > 0) {
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            op = writeLength(dst, op, matchCode);
+        }
+        return op;
+    }
+
+    private static int writeLength(byte[] dst, int op, int length) {
+        if (length < 15) {
+            return op;
+        }
+        length -= 15;
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] src, int i) {
+        return (src[i] & 0xFF) | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF) << 16 | (src[i + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * Decompresses the whole of {@code src} into {@code dst} from index 0 and returns the decompressed length.
+     * Neither buffer's position is changed.
+     *
+     * @throws IllegalArgumentException if the block is malformed or does not fit {@code dst}
+     */
+    static int decompress(ByteBuffer src, ByteBuffer dst) {
+        int ip = src.position();
+        int end = src.limit();
+        int op = 0;
+        int capacity = dst.limit();
+
+        while (ip < end) {
+            int token = src.get(ip++) & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int b;
+                do {
+                    check(ip < end);
+                    b = src.get(ip++) & 0xFF;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            check(literalLength <= end - ip && literalLength <= capacity - op);
+            dst.put(op, src, ip, literalLength);
+            ip += literalLength;
+            op += literalLength;
+            if (ip == end) {
+                break;
+            }
+
+            check(ip + 2 <= end);
+            int offset = (src.get(ip) & 0xFF) | (src.get(ip + 1) & 0xFF) << 8;
+            ip += 2;
+            int matchLength = token & 0x0F;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    check(ip < end);
+                    b = src.get(ip++) & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            check(offset > 0 && offset <= op && matchLength <= capacity - op);
+
+            int ref = op - offset;
+            if (offset >= matchLength) {
+                dst.put(op, dst, ref, matchLength);
+            } else {
+                for (int i = 0; i < matchLength; i++) {
+                    dst.put(op + i, dst.get(ref + i));
+                }
+            }
+            op += matchLength;
+        }
+        return op;
+    }
+
+    private static void check(boolean valid) {
+        if (!valid) {
+            throw new IllegalArgumentException("Malformed LZ4 block");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.sim3d.loader;
+
+import com.sim3d.graphics.Texture;
+import org.joml.Vector3f;
+
+/**
+ * Surface properties read from an MTL library: diffuse colour ({@code Kd}), diffuse map ({@code map_Kd}) and
+ * opacity ({@code d} / {@code Tr}). The diffuse texture itself is shared through the {@link AssetManager}.
+ */
+public class Material {
+    private final String name;
+    private final Vector3f diffuseColor = new Vector3f(1.0f, 1.0f, 1.0f);
+    private float alpha = 1.0f;
+    private String diffuseTexturePath;
+    private Texture diffuseTexture;
+
+    public Material(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Vector3f getDiffuseColor() {
+        return diffuseColor;
+    }
+
+    public void setDiffuseColor(float r, float g, float b) {
+        diffuseColor.set(r, g, b);
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
+
+    public void setAlpha(float alpha) {
+        this.alpha = Math.max(0.0f, Math.min(1.0f, alpha));
+    }
+
+    public boolean isTransparent() {
+        return alpha < 1.0f;
+    }
+
+    public String getDiffuseTexturePath() {
+        return diffuseTexturePath;
+    }
+
+    public void setDiffuseTexturePath(String diffuseTexturePath) {
+        this.diffuseTexturePath = diffuseTexturePath;
+    }
+
+    public Texture getDiffuseTexture() {
+        return diffuseTexture;
+    }
+
+    public void setDiffuseTexture(Texture diffuseTexture) {
+        this.diffuseTexture = diffuseTexture;
+    }
+}
@@ -0,0 +1,282 @@
+package com.sim3d.loader;
+
+import com.sim3d.graphics.VertexFormat;
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary cache of compiled OBJ models. A cache file sits next to an OBJ file on disk ({@code model.obj.mesh});
+ * classpath resources are cached under {@code mesh-cache/} in the working directory. Files are keyed by a CRC32C
+ * of the source bytes plus its length and the {@link MeshOptions} they were compiled with, and are memory-mapped
+ * on load, so vertex and index data go to {@code glBufferData} without being parsed or copied.
+ *
+ * <p>Layout, native byte order: magic, version, byte-order mark, source hash, source length, {@link MeshOptions}
+ * key, mesh count, bounding box min/max, the referenced MTL libraries, then per mesh its {@link VertexFormat} id,
+ * material name, position decode values, the index count of every level of detail, vertex and index byte counts
+ * followed by the encoded vertex and index bytes, padded to four bytes. Strings are stored as a byte length
+ * ({@code -1} for null) and UTF-8 bytes padded to four bytes. MTL libraries are re-read on every load, so edited
+ * materials take effect without invalidating the cache.
+ */
+final class MeshCache {
+    private static final Logger logger = LoggerFactory.getLogger(MeshCache.class);
+
+    private static final int MAGIC = 0x4D443353; // "S3DM"
+    // Bump whenever the layout or the loader's output for the same source changes
+    static final int VERSION = 5;
+    private static final int BYTE_ORDER_MARK = 0x01020304;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES + 3 * Long.BYTES + Integer.BYTES + 6 * Float.BYTES;
+    private static final int MESH_HEADER_BYTES = 4 * Integer.BYTES + 6 * Float.BYTES;
+
+    private static final String EXTENSION = ".mesh";
+    private static final Path RESOURCE_CACHE_DIR = Path.of("mesh-cache");
+
+    private MeshCache() {}
+
+    static ModelData loadResource(String resourcePath) {
+        try (AssetBytes source = readSource(resourcePath, false)) {
+            return source != null ? load(source.buffer(), resourcePath, false) : null;
+        }
+    }
+
+    static ModelData loadFile(String filePath) {
+        try (AssetBytes source = readSource(filePath, true)) {
+            return source != null ? load(source.buffer(), filePath, true) : null;
+        }
+    }
+
+    /**
+     * Reads a resource from the asset pack or classpath, or maps a file; the I/O half of loading, kept apart so it
+     * can run on another executor than the parsing in {@link #load(ByteBuffer, String, boolean)}. The caller
+     * closes the result once loading is done.
+     */
+    static AssetBytes readSource(String path, boolean fromFile) {
+        if (!fromFile) {
+            return ObjLoader.readResource(path);
+        }
+        ByteBuffer mapped = ObjLoader.mapFile(path);
+        return mapped != null ? AssetBytes.of(mapped) : null;
+    }
+
+    static ModelData load(ByteBuffer source, String path, boolean fromFile) {
+        Path cacheFile;
+        if (fromFile) {
+            cacheFile = Path.of(path + EXTENSION);
+        } else {
+            String relative = path.startsWith("/") ? path.substring(1) : path;
+            cacheFile = RESOURCE_CACHE_DIR.resolve(relative + EXTENSION);
+        }
+        return load(source, path, fromFile, MeshOptions.fromSettings(), cacheFile);
+    }
+
+    private static ModelData load(ByteBuffer source, String sourcePath, boolean fromFile, MeshOptions options,
+                                  Path cacheFile) {
+        long hash = hash(source);
+        long length = source.remaining();
+        long optionsKey = options.cacheKey();
+
+        ModelData cached = read(cacheFile, hash, length, optionsKey, sourcePath, fromFile);
+        if (cached != null) {
+            logger.info("Loaded compiled mesh for {} from {}", sourcePath, cacheFile);
+            return cached;
+        }
+
+        ModelData data = ObjLoader.parse(source, sourcePath, fromFile, options);
+        if (data != null) {
+            write(cacheFile, hash, length, optionsKey, data);
+        }
+        return data;
+    }
+
+    private static long hash(ByteBuffer source) {
+        CRC32C crc = new CRC32C();
+        crc.update(source.duplicate());
+        return crc.getValue();
+    }
+
+    private static ModelData read(Path cacheFile, long hash, long length, long optionsKey, String sourcePath,
+                                  boolean fromFile) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                logger.debug("Ignoring mesh cache with unexpected size: {}", cacheFile);
+                return null;
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.nativeOrder());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != BYTE_ORDER_MARK) {
+                logger.debug("Ignoring mesh cache with foreign format or version: {}", cacheFile);
+                return null;
+            }
+            if (buffer.getLong() != hash || buffer.getLong() != length || buffer.getLong() != optionsKey) {
+                logger.debug("Mesh cache is stale: {}", cacheFile);
+                return null;
+            }
+
+            int meshCount = buffer.getInt();
+            Vector3f boundingMin = new Vector3f(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+            Vector3f boundingMax = new Vector3f(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+
+            int libraryCount = buffer.getInt();
+            List<String> libraries = new ArrayList<>(libraryCount);
+            for (int i = 0; i < libraryCount; i++) {
+                libraries.add(getString(buffer));
+            }
+
+            List<MeshData> meshes = new ArrayList<>(meshCount);
+            for (int i = 0; i < meshCount; i++) {
+                if (buffer.remaining() < MESH_HEADER_BYTES) {
+                    logger.warn("Truncated mesh cache: {}", cacheFile);
+                    return null;
+                }
+                VertexFormat format = VertexFormat.fromId(buffer.getInt());
+                String material = getString(buffer);
+                float[] positionDecode = new float[6];
+                buffer.asFloatBuffer().get(positionDecode);
+                buffer.position(buffer.position() + positionDecode.length * Float.BYTES);
+                int lodCount = buffer.getInt();
+                if (lodCount < 1 || lodCount > MeshOptions.MAX_LOD_LEVELS + 1
+                    || buffer.remaining() < (lodCount + 2) * Integer.BYTES) {
+                    logger.warn("Truncated mesh cache: {}", cacheFile);
+                    return null;
+                }
+                int[] lodIndexCounts = new int[lodCount];
+                for (int lod = 0; lod < lodCount; lod++) {
+                    lodIndexCounts[lod] = buffer.getInt();
+                }
+                int vertexBytes = buffer.getInt();
+                int indexBytes = buffer.getInt();
+                long dataBytes = align((long) vertexBytes + indexBytes);
+                if (vertexBytes < 0 || indexBytes < 0 || dataBytes > buffer.remaining()) {
+                    logger.warn("Truncated mesh cache: {}", cacheFile);
+                    return null;
+                }
+
+                int offset = buffer.position();
+                ByteBuffer vertexData = buffer.slice(offset, vertexBytes).order(ByteOrder.nativeOrder());
+                ByteBuffer indexData = buffer.slice(offset + vertexBytes, indexBytes).order(ByteOrder.nativeOrder());
+                buffer.position(offset + (int) dataBytes);
+                meshes.add(MeshData.ofBytes(vertexData, indexData, format, positionDecode, material,
+                    lodIndexCounts));
+            }
+            return new ModelData(ObjLoader.extractModelName(sourcePath), meshes, boundingMin, boundingMax,
+                libraries, MtlLoader.load(libraries, sourcePath, fromFile));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read mesh cache {}", cacheFile, e);
+            return null;
+        }
+    }
+
+    private static void write(Path cacheFile, long hash, long length, long optionsKey, ModelData data) {
+        long size = HEADER_BYTES + Integer.BYTES;
+        for (String library : data.materialLibraries) {
+            size += stringBytes(library);
+        }
+        for (MeshData mesh : data.meshes) {
+            size += MESH_HEADER_BYTES + stringBytes(mesh.materialName())
+                + (long) mesh.lodIndexCounts().length * Integer.BYTES
+                + align((long) mesh.vertexByteCount() + mesh.indexByteCount());
+        }
+        if (size > Integer.MAX_VALUE) {
+            logger.debug("Model too large for the mesh cache: {}", cacheFile);
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.nativeOrder());
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(BYTE_ORDER_MARK);
+        buffer.putLong(hash).putLong(length).putLong(optionsKey);
+        buffer.putInt(data.meshes.size());
+        buffer.putFloat(data.boundingBoxMin.x).putFloat(data.boundingBoxMin.y).putFloat(data.boundingBoxMin.z);
+        buffer.putFloat(data.boundingBoxMax.x).putFloat(data.boundingBoxMax.y).putFloat(data.boundingBoxMax.z);
+        buffer.putInt(data.materialLibraries.size());
+        for (String library : data.materialLibraries) {
+            putString(buffer, library);
+        }
+        for (MeshData mesh : data.meshes) {
+            buffer.putInt(mesh.format().id());
+            putString(buffer, mesh.materialName());
+            for (float value : mesh.positionDecode()) {
+                buffer.putFloat(value);
+            }
+            buffer.putInt(mesh.lodIndexCounts().length);
+            for (int count : mesh.lodIndexCounts()) {
+                buffer.putInt(count);
+            }
+            buffer.putInt(mesh.vertexByteCount());
+            buffer.putInt(mesh.indexByteCount());
+            int dataStart = buffer.position();
+            mesh.writeTo(buffer);
+            buffer.position(dataStart + (int) align((long) mesh.vertexByteCount() + mesh.indexByteCount()));
+        }
+
+        try {
+            Path directory = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, buffer.array());
+                try {
+                    Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.info("Wrote mesh cache {} ({} KB)", cacheFile, size / 1024);
+        } catch (IOException e) {
+            logger.warn("Could not write mesh cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private static int stringBytes(String value) {
+        return Integer.BYTES + (value == null ? 0 : align(value.getBytes(StandardCharsets.UTF_8).length));
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+        buffer.position(buffer.position() + align(bytes.length) - bytes.length);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        buffer.position(buffer.position() + align(length) - length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+
+    private static long align(long length) {
+        return (length + 3) & ~3L;
+    }
+}
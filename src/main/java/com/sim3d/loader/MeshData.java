@@ -0,0 +1,98 @@
+package com.sim3d.loader;
+
+import com.sim3d.graphics.FloatArrayBuilder;
+import com.sim3d.graphics.IntArrayBuilder;
+import com.sim3d.graphics.Mesh;
+import com.sim3d.graphics.VertexFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CPU-side geometry of one mesh, already encoded in its {@link VertexFormat}: either freshly encoded into direct
+ * buffers or raw slices of a mapped cache file. Creating the {@link Mesh} is the only step that needs the
+ * GL context.
+ */
+final class MeshData {
+    private final VertexFormat format;
+    private final float[] positionDecode;
+    private final ByteBuffer vertexBytes;
+    private final ByteBuffer indexBytes;
+    private final String materialName;
+    private final int[] lodIndexCounts;
+
+    private MeshData(VertexFormat format, float[] positionDecode, ByteBuffer vertexBytes, ByteBuffer indexBytes,
+                     String materialName, int[] lodIndexCounts) {
+        this.format = format;
+        this.positionDecode = positionDecode;
+        this.vertexBytes = vertexBytes;
+        this.indexBytes = indexBytes;
+        this.materialName = materialName;
+        this.lodIndexCounts = lodIndexCounts;
+    }
+
+    /**
+     * Encodes vertices in the {@link VertexFormat} source layout and their indices into {@code format}. The
+     * indices hold every level of detail back to back, {@code lodIndexCounts} long each.
+     */
+    static MeshData encode(FloatArrayBuilder vertices, IntArrayBuilder indices, VertexFormat format,
+                           String materialName, int[] lodIndexCounts) {
+        int vertexCount = vertices.size() / format.sourceStride();
+        float[] positionDecode = format.positionDecode(vertices.array(), vertexCount);
+
+        ByteBuffer vertexBytes = ByteBuffer.allocateDirect(vertexCount * format.stride());
+        format.encodeVertices(vertices.array(), vertexCount, positionDecode, vertexBytes);
+        ByteBuffer indexBytes = ByteBuffer.allocateDirect(indices.size() * VertexFormat.indexSize(vertexCount));
+        VertexFormat.encodeIndices(indices.array(), indices.size(), vertexCount, indexBytes);
+
+        return new MeshData(format, positionDecode, vertexBytes.flip(), indexBytes.flip(), materialName,
+            lodIndexCounts);
+    }
+
+    static MeshData ofBytes(ByteBuffer vertexBytes, ByteBuffer indexBytes, VertexFormat format,
+                            float[] positionDecode, String materialName, int[] lodIndexCounts) {
+        return new MeshData(format, positionDecode, vertexBytes, indexBytes, materialName, lodIndexCounts);
+    }
+
+    VertexFormat format() {
+        return format;
+    }
+
+    float[] positionDecode() {
+        return positionDecode;
+    }
+
+    boolean hasTextureCoords() {
+        return format.hasTextureCoords();
+    }
+
+    /**
+     * Name of the MTL material used by this mesh, or {@code null} if the faces had no {@code usemtl}.
+     */
+    String materialName() {
+        return materialName;
+    }
+
+    int[] lodIndexCounts() {
+        return lodIndexCounts;
+    }
+
+    int vertexByteCount() {
+        return vertexBytes.remaining();
+    }
+
+    int indexByteCount() {
+        return indexBytes.remaining();
+    }
+
+    /**
+     * Writes the vertex bytes followed by the index bytes.
+     */
+    void writeTo(ByteBuffer target) {
+        target.put(vertexBytes.duplicate());
+        target.put(indexBytes.duplicate());
+    }
+
+    Mesh upload() {
+        return new Mesh(vertexBytes, indexBytes, format, positionDecode, lodIndexCounts);
+    }
+}
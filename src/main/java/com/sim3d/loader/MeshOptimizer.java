@@ -0,0 +1,164 @@
+package com.sim3d.loader;
+
+import com.sim3d.graphics.FloatArrayBuilder;
+import com.sim3d.graphics.IntArrayBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Reorders indexed meshes for the GPU: triangles for post-transform vertex cache hits (Tipsify, Sander et al.
+ * 2007, linear time) and then vertices into first-use order so vertex fetches walk memory sequentially.
+ * Both steps work in place on the builders and leave the rendered geometry unchanged.
+ */
+final class MeshOptimizer {
+    // FIFO size used for optimizing and for the ACMR figures; a conservative match for common hardware
+    static final int CACHE_SIZE = 16;
+
+    private MeshOptimizer() {}
+
+    /**
+     * Optimizes the mesh in place.
+     *
+     * @return the simulated cache misses before and after the optimization
+     */
+    static int[] optimize(FloatArrayBuilder vertices, IntArrayBuilder indices, int stride) {
+        int vertexCount = vertices.size() / stride;
+        int indexCount = indices.size();
+        int[] index = indices.array();
+        int missesBefore = cacheMisses(index, indexCount, vertexCount);
+
+        int[] ordered = tipsify(index, indexCount, vertexCount);
+        System.arraycopy(ordered, 0, index, 0, indexCount);
+        reorderForFetch(vertices.array(), vertexCount, stride, index, indexCount);
+
+        return new int[] { missesBefore, cacheMisses(index, indexCount, vertexCount) };
+    }
+
+    /**
+     * Counts vertex shader invocations of a FIFO post-transform cache of {@link #CACHE_SIZE} entries. Divided by
+     * the triangle count this is the average cache miss ratio (ACMR): 3 is the worst case, 0.5 the ideal.
+     */
+    static int cacheMisses(int[] indices, int indexCount, int vertexCount) {
+        int[] insertedAt = new int[vertexCount];
+        Arrays.fill(insertedAt, -CACHE_SIZE - 1);
+        int misses = 0;
+        for (int i = 0; i < indexCount; i++) {
+            int vertex = indices[i];
+            if (misses - insertedAt[vertex] > CACHE_SIZE) {
+                insertedAt[vertex] = misses++;
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * Returns the triangles reordered for the post-transform vertex cache.
+     */
+    static int[] tipsify(int[] indices, int indexCount, int vertexCount) {
+        int triangleCount = indexCount / 3;
+        int[] output = new int[indexCount];
+        if (triangleCount == 0) {
+            return output;
+        }
+
+        // Triangles around each vertex, in compressed sparse row form
+        int[] live = new int[vertexCount];
+        for (int i = 0; i < triangleCount * 3; i++) {
+            live[indices[i]]++;
+        }
+        int[] offsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] = offsets[v] + live[v];
+        }
+        int[] adjacency = new int[triangleCount * 3];
+        int[] fill = Arrays.copyOf(offsets, vertexCount);
+        for (int i = 0; i < triangleCount * 3; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+
+        int[] cacheTime = new int[vertexCount];
+        boolean[] emitted = new boolean[triangleCount];
+        int[] deadEnd = new int[triangleCount * 3];
+        int deadEndSize = 0;
+        IntArrayBuilder candidates = new IntArrayBuilder();
+        int timestamp = CACHE_SIZE + 1;
+        int cursor = 0;
+        int outputSize = 0;
+
+        int fanning = indices[0];
+        while (fanning >= 0) {
+            candidates.clear();
+            for (int a = offsets[fanning]; a < offsets[fanning + 1]; a++) {
+                int triangle = adjacency[a];
+                if (emitted[triangle]) {
+                    continue;
+                }
+                emitted[triangle] = true;
+                for (int k = 0; k < 3; k++) {
+                    int vertex = indices[triangle * 3 + k];
+                    output[outputSize++] = vertex;
+                    deadEnd[deadEndSize++] = vertex;
+                    candidates.add(vertex);
+                    live[vertex]--;
+                    if (timestamp - cacheTime[vertex] > CACHE_SIZE) {
+                        cacheTime[vertex] = timestamp++;
+                    }
+                }
+            }
+
+            // Prefer the candidate that is still in the cache and will stay there while its fan is emitted
+            fanning = -1;
+            int bestPriority = -1;
+            int[] candidate = candidates.array();
+            for (int i = 0; i < candidates.size(); i++) {
+                int vertex = candidate[i];
+                if (live[vertex] > 0) {
+                    int priority = 0;
+                    if (timestamp - cacheTime[vertex] + 2 * live[vertex] <= CACHE_SIZE) {
+                        priority = timestamp - cacheTime[vertex];
+                    }
+                    if (priority > bestPriority) {
+                        bestPriority = priority;
+                        fanning = vertex;
+                    }
+                }
+            }
+
+            // Dead end: back up through recently emitted vertices, then scan for any vertex with work left
+            while (fanning < 0 && deadEndSize > 0) {
+                int vertex = deadEnd[--deadEndSize];
+                if (live[vertex] > 0) {
+                    fanning = vertex;
+                }
+            }
+            while (fanning < 0 && cursor < vertexCount) {
+                if (live[cursor] > 0) {
+                    fanning = cursor;
+                }
+                cursor++;
+            }
+        }
+        return output;
+    }
+
+    private static void reorderForFetch(float[] vertices, int vertexCount, int stride, int[] indices, int indexCount) {
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (int i = 0; i < indexCount; i++) {
+            int vertex = indices[i];
+            if (remap[vertex] < 0) {
+                remap[vertex] = next++;
+            }
+            indices[i] = remap[vertex];
+        }
+
+        float[] reordered = new float[vertexCount * stride];
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            // Unreferenced vertices keep their data at the end
+            int target = remap[vertex] >= 0 ? remap[vertex] : next++;
+            System.arraycopy(vertices, vertex * stride, reordered, target * stride, stride);
+        }
+        System.arraycopy(reordered, 0, vertices, 0, reordered.length);
+    }
+}
@@ -0,0 +1,47 @@
+package com.sim3d.loader;
+
+import com.sim3d.engine.Settings;
+import com.sim3d.graphics.VertexFormat;
+
+/**
+ * Post-processing applied to loaded OBJ meshes. Compiled meshes depend on these values, so they are part of the
+ * mesh cache key.
+ */
+final class MeshOptions {
+    static final int MAX_LOD_LEVELS = 7;
+
+    final boolean smoothNormals;
+    final float creaseAngle;
+    final boolean optimize;
+    final boolean compactVertices;
+    final int lodLevels;
+
+    MeshOptions(boolean smoothNormals, float creaseAngle, boolean optimize, boolean compactVertices, int lodLevels) {
+        this.smoothNormals = smoothNormals;
+        this.creaseAngle = creaseAngle;
+        this.optimize = optimize;
+        this.compactVertices = compactVertices;
+        this.lodLevels = Math.max(0, Math.min(lodLevels, MAX_LOD_LEVELS));
+    }
+
+    static MeshOptions fromSettings() {
+        Settings.ModelSettings models = Settings.getInstance().getModels();
+        return new MeshOptions(models.smoothNormals, models.creaseAngle, models.optimizeMeshes,
+            models.compactVertices, models.lodLevels);
+    }
+
+    VertexFormat vertexFormat(boolean texCoords) {
+        return compactVertices ? VertexFormat.compact(texCoords) : VertexFormat.standard(texCoords);
+    }
+
+    /**
+     * Identifies the options in the mesh cache header.
+     */
+    long cacheKey() {
+        long key = (smoothNormals ? 1 : 0) | (optimize ? 2 : 0) | (compactVertices ? 4 : 0) | lodLevels << 3;
+        if (smoothNormals) {
+            key |= (long) Float.floatToIntBits(creaseAngle) << 32;
+        }
+        return key;
+    }
+}
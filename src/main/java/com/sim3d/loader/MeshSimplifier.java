@@ -0,0 +1,350 @@
+package com.sim3d.loader;
+
+import com.sim3d.graphics.FloatArrayBuilder;
+import com.sim3d.graphics.IntArrayBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Quadric error metric simplification (Garland and Heckbert) by half-edge collapses: a vertex is merged into
+ * one of its neighbours, so no new vertices are created and every level of detail can index the original
+ * vertex buffer.
+ *
+ * <p>Vertices on open borders and on attribute seams (several vertices sharing one position because their
+ * normals or texture coordinates differ) are never moved, which keeps outlines, UV seams and hard edges intact.
+ * Collapses that would flip a triangle are rejected.
+ */
+final class MeshSimplifier {
+    private static final int MAX_PASSES = 32;
+    // Ten quadric coefficients followed by the summed triangle area they are weighted by
+    private static final int QUADRIC_SIZE = 11;
+    // Each level halves the triangle count and may deviate twice as far as the previous one
+    private static final float LEVEL_ERROR = 0.005f;
+    // A level that keeps more than this share of the previous level's triangles is not worth storing
+    private static final float MIN_REDUCTION = 0.8f;
+
+    private MeshSimplifier() {}
+
+    /**
+     * Appends up to {@code levels} simplified copies of the mesh to {@code indices}, each with half the triangles of
+     * the one before it, and returns the index count of every level, starting with the original. Every level is
+     * simplified from the original mesh, so its error is measured against the real surface rather than compounding
+     * from level to level. Vertices are shared by all levels and left untouched.
+     */
+    static int[] appendLevels(FloatArrayBuilder vertices, IntArrayBuilder indices, int stride, int levels,
+                              boolean optimize) {
+        float[] vertexArray = vertices.array();
+        int vertexCount = vertices.size() / stride;
+        IntArrayBuilder counts = new IntArrayBuilder(levels + 1);
+        counts.add(indices.size());
+
+        float extent = extent(vertexArray, stride, vertexCount);
+        int[] original = indices.toArray();
+        int[] previous = original;
+        for (int level = 1; level <= levels; level++) {
+            float error = extent * LEVEL_ERROR * (1 << level);
+            int target = previous.length / 6 * 3;
+            int[] simplified = simplify(vertexArray, stride, vertexCount, original, original.length, target,
+                error * error);
+            if (simplified.length == 0 || simplified.length > previous.length * MIN_REDUCTION) {
+                break;
+            }
+            if (optimize) {
+                simplified = MeshOptimizer.tipsify(simplified, simplified.length, vertexCount);
+            }
+            indices.add(simplified, 0, simplified.length);
+            counts.add(simplified.length);
+            previous = simplified;
+        }
+        return counts.toArray();
+    }
+
+    /**
+     * Returns the indices of a simplified mesh with at most about {@code targetIndexCount} indices, stopping
+     * earlier when no collapse stays below {@code maxError}, the mean squared distance in model units from the
+     * planes of the original triangles.
+     */
+    static int[] simplify(float[] vertices, int stride, int vertexCount, int[] indices, int indexCount,
+                          int targetIndexCount, float maxError) {
+        int[] current = Arrays.copyOf(indices, indexCount);
+        int count = indexCount;
+        if (count <= targetIndexCount) {
+            return current;
+        }
+
+        boolean[] locked = findLockedVertices(vertices, stride, vertexCount, current, count);
+        double[] quadrics = computeQuadrics(vertices, stride, vertexCount, current, count);
+
+        int[] collapseTarget = new int[vertexCount];
+        float[] collapseCost = new float[vertexCount];
+        boolean[] touched = new boolean[vertexCount];
+        int[] offsets = new int[vertexCount + 1];
+        int[] adjacency = new int[count];
+
+        for (int pass = 0; pass < MAX_PASSES && count > targetIndexCount; pass++) {
+            buildAdjacency(current, count, vertexCount, offsets, adjacency);
+
+            // Cheapest collapse for every movable vertex
+            Arrays.fill(collapseTarget, -1);
+            Arrays.fill(collapseCost, Float.MAX_VALUE);
+            for (int i = 0; i < count; i += 3) {
+                for (int k = 0; k < 3; k++) {
+                    int a = current[i + k];
+                    int b = current[i + (k + 1) % 3];
+                    considerCollapse(a, b, vertices, stride, quadrics, locked, collapseTarget, collapseCost);
+                    considerCollapse(b, a, vertices, stride, quadrics, locked, collapseTarget, collapseCost);
+                }
+            }
+
+            int candidateCount = 0;
+            long[] candidates = new long[vertexCount];
+            for (int v = 0; v < vertexCount; v++) {
+                if (collapseTarget[v] >= 0 && collapseCost[v] <= maxError) {
+                    // Non-negative float bits sort like the floats themselves
+                    candidates[candidateCount++] = (long) Float.floatToIntBits(collapseCost[v]) << 32 | v;
+                }
+            }
+            if (candidateCount == 0) {
+                break;
+            }
+            Arrays.sort(candidates, 0, candidateCount);
+
+            // Apply the cheapest independent collapses of this pass
+            Arrays.fill(touched, false);
+            int trianglesToRemove = (count - targetIndexCount) / 3;
+            int removed = 0;
+            int collapses = 0;
+            int[] remap = new int[vertexCount];
+            for (int v = 0; v < vertexCount; v++) {
+                remap[v] = v;
+            }
+            for (int c = 0; c < candidateCount && removed < trianglesToRemove; c++) {
+                int u = (int) candidates[c];
+                int v = collapseTarget[u];
+                if (touched[u] || touched[v]) {
+                    continue;
+                }
+                int collapsed = checkCollapse(u, v, vertices, stride, current, offsets, adjacency);
+                if (collapsed < 0) {
+                    continue;
+                }
+
+                remap[u] = v;
+                for (int q = 0; q < QUADRIC_SIZE; q++) {
+                    quadrics[v * QUADRIC_SIZE + q] += quadrics[u * QUADRIC_SIZE + q];
+                }
+                // Everything around u changes shape, so leave it for the next pass
+                for (int a = offsets[u]; a < offsets[u + 1]; a++) {
+                    int triangle = adjacency[a] * 3;
+                    touched[current[triangle]] = true;
+                    touched[current[triangle + 1]] = true;
+                    touched[current[triangle + 2]] = true;
+                }
+                removed += collapsed;
+                collapses++;
+            }
+            if (collapses == 0) {
+                break;
+            }
+
+            int write = 0;
+            for (int i = 0; i < count; i += 3) {
+                int a = remap[current[i]];
+                int b = remap[current[i + 1]];
+                int c = remap[current[i + 2]];
+                if (a != b && b != c && a != c) {
+                    current[write++] = a;
+                    current[write++] = b;
+                    current[write++] = c;
+                }
+            }
+            count = write;
+        }
+        return Arrays.copyOf(current, count);
+    }
+
+    private static void considerCollapse(int from, int to, float[] vertices, int stride, double[] quadrics,
+                                         boolean[] locked, int[] collapseTarget, float[] collapseCost) {
+        if (locked[from]) {
+            return;
+        }
+        float cost = quadricError(quadrics, from, to, vertices, to * stride);
+        if (cost < collapseCost[from]) {
+            collapseCost[from] = cost;
+            collapseTarget[from] = to;
+        }
+    }
+
+    /**
+     * Checks that moving {@code u} onto {@code v} flips no triangle around {@code u}.
+     *
+     * @return the number of triangles the collapse removes, or -1 if it is rejected
+     */
+    private static int checkCollapse(int u, int v, float[] vertices, int stride, int[] indices, int[] offsets,
+                                     int[] adjacency) {
+        int removed = 0;
+        for (int a = offsets[u]; a < offsets[u + 1]; a++) {
+            int triangle = adjacency[a] * 3;
+            int i0 = indices[triangle];
+            int i1 = indices[triangle + 1];
+            int i2 = indices[triangle + 2];
+            if (i0 == v || i1 == v || i2 == v) {
+                removed++;
+                continue;
+            }
+
+            float[] before = normal(vertices, stride, i0, i1, i2);
+            float[] after = normal(vertices, stride, i0 == u ? v : i0, i1 == u ? v : i1, i2 == u ? v : i2);
+            if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0) {
+                return -1;
+            }
+        }
+        return removed;
+    }
+
+    private static float[] normal(float[] vertices, int stride, int i0, int i1, int i2) {
+        int p0 = i0 * stride;
+        int p1 = i1 * stride;
+        int p2 = i2 * stride;
+        float e1x = vertices[p1] - vertices[p0];
+        float e1y = vertices[p1 + 1] - vertices[p0 + 1];
+        float e1z = vertices[p1 + 2] - vertices[p0 + 2];
+        float e2x = vertices[p2] - vertices[p0];
+        float e2y = vertices[p2 + 1] - vertices[p0 + 1];
+        float e2z = vertices[p2 + 2] - vertices[p0 + 2];
+        return new float[] { e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x };
+    }
+
+    private static void buildAdjacency(int[] indices, int count, int vertexCount, int[] offsets, int[] adjacency) {
+        Arrays.fill(offsets, 0);
+        for (int i = 0; i < count; i++) {
+            offsets[indices[i] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, vertexCount);
+        for (int i = 0; i < count; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+    }
+
+    /**
+     * Locks vertices that share their position with another vertex (attribute seams) and vertices on edges used
+     * by only one triangle (open borders). Edges are compared by position, so seams do not count as borders.
+     */
+    private static boolean[] findLockedVertices(float[] vertices, int stride, int vertexCount, int[] indices,
+                                                int count) {
+        IndexedMeshBuilder welder = new IndexedMeshBuilder(3, vertexCount);
+        float[] position = new float[3];
+        for (int v = 0; v < vertexCount; v++) {
+            position[0] = vertices[v * stride] + 0.0f;
+            position[1] = vertices[v * stride + 1] + 0.0f;
+            position[2] = vertices[v * stride + 2] + 0.0f;
+            welder.add(position);
+        }
+        int[] cluster = welder.indices().toArray();
+        int[] clusterSize = new int[welder.vertexCount()];
+        for (int v = 0; v < vertexCount; v++) {
+            clusterSize[cluster[v]]++;
+        }
+
+        boolean[] locked = new boolean[vertexCount];
+        boolean[] borderCluster = new boolean[welder.vertexCount()];
+        long[] edges = new long[count];
+        for (int i = 0; i < count; i += 3) {
+            for (int k = 0; k < 3; k++) {
+                int a = cluster[indices[i + k]];
+                int b = cluster[indices[i + (k + 1) % 3]];
+                edges[i + k] = (long) Math.min(a, b) << 32 | Math.max(a, b);
+            }
+        }
+        Arrays.sort(edges);
+        for (int i = 0; i < count; ) {
+            int run = 1;
+            while (i + run < count && edges[i + run] == edges[i]) {
+                run++;
+            }
+            if (run == 1) {
+                borderCluster[(int) (edges[i] >>> 32)] = true;
+                borderCluster[(int) edges[i]] = true;
+            }
+            i += run;
+        }
+
+        for (int v = 0; v < vertexCount; v++) {
+            locked[v] = clusterSize[cluster[v]] > 1 || borderCluster[cluster[v]];
+        }
+        return locked;
+    }
+
+    /**
+     * Sums the area-weighted plane quadric of every triangle into its three vertices.
+     */
+    private static double[] computeQuadrics(float[] vertices, int stride, int vertexCount, int[] indices, int count) {
+        double[] quadrics = new double[vertexCount * QUADRIC_SIZE];
+        for (int i = 0; i < count; i += 3) {
+            float[] n = normal(vertices, stride, indices[i], indices[i + 1], indices[i + 2]);
+            double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+            if (length == 0) {
+                continue;
+            }
+            double a = n[0] / length;
+            double b = n[1] / length;
+            double c = n[2] / length;
+            int p0 = indices[i] * stride;
+            double d = -(a * vertices[p0] + b * vertices[p0 + 1] + c * vertices[p0 + 2]);
+            double area = length * 0.5;
+            double[] plane = { a * a, a * b, a * c, a * d, b * b, b * c, b * d, c * c, c * d, d * d, 1.0 };
+            for (int k = 0; k < 3; k++) {
+                int offset = indices[i + k] * QUADRIC_SIZE;
+                for (int q = 0; q < QUADRIC_SIZE; q++) {
+                    quadrics[offset + q] += plane[q] * area;
+                }
+            }
+        }
+        return quadrics;
+    }
+
+    /**
+     * Evaluates the combined quadric of {@code u} and {@code v} at the position stored at {@code offset},
+     * normalized by the area it covers.
+     */
+    private static float quadricError(double[] quadrics, int u, int v, float[] vertices, int offset) {
+        double x = vertices[offset];
+        double y = vertices[offset + 1];
+        double z = vertices[offset + 2];
+        int qu = u * QUADRIC_SIZE;
+        int qv = v * QUADRIC_SIZE;
+        double aa = quadrics[qu] + quadrics[qv];
+        double ab = quadrics[qu + 1] + quadrics[qv + 1];
+        double ac = quadrics[qu + 2] + quadrics[qv + 2];
+        double ad = quadrics[qu + 3] + quadrics[qv + 3];
+        double bb = quadrics[qu + 4] + quadrics[qv + 4];
+        double bc = quadrics[qu + 5] + quadrics[qv + 5];
+        double bd = quadrics[qu + 6] + quadrics[qv + 6];
+        double cc = quadrics[qu + 7] + quadrics[qv + 7];
+        double cd = quadrics[qu + 8] + quadrics[qv + 8];
+        double dd = quadrics[qu + 9] + quadrics[qv + 9];
+        double area = quadrics[qu + 10] + quadrics[qv + 10];
+        double error = aa * x * x + 2 * ab * x * y + 2 * ac * x * z + 2 * ad * x
+            + bb * y * y + 2 * bc * y * z + 2 * bd * y
+            + cc * z * z + 2 * cd * z + dd;
+        return area > 0 ? (float) Math.max(0.0, error / area) : 0.0f;
+    }
+
+    private static float extent(float[] vertices, int stride, int vertexCount) {
+        float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+        float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        for (int v = 0; v < vertexCount; v++) {
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], vertices[v * stride + axis]);
+                max[axis] = Math.max(max[axis], vertices[v * stride + axis]);
+            }
+        }
+        float dx = max[0] - min[0];
+        float dy = max[1] - min[1];
+        float dz = max[2] - min[2];
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
@@ -1,14 +1,25 @@
 package com.sim3d.loader;
 
+import com.sim3d.graphics.GLState;
+import com.sim3d.graphics.InstanceBuffer;
 import com.sim3d.graphics.Mesh;
+import com.sim3d.graphics.ShaderProgram;
 import com.sim3d.graphics.Texture;
 import org.joml.Vector3f;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import static org.lwjgl.opengl.GL33.*;
 
 public class Model {
+    private static final Vector3f WHITE = new Vector3f(1.0f);
+
     private final String name;
     private final List<Mesh> meshes;
+    private final List<Material> materials;
     private final Vector3f boundingBoxMin;
     private final Vector3f boundingBoxMax;
     private Texture texture;
@@ -17,13 +28,23 @@ public class Model {
     public Model(String name, List<Mesh> meshes) {
         this.name = name;
         this.meshes = meshes;
+        this.materials = Collections.nCopies(meshes.size(), null);
         this.boundingBoxMin = new Vector3f(Float.MAX_VALUE);
         this.boundingBoxMax = new Vector3f(-Float.MAX_VALUE);
     }
 
     public Model(String name, List<Mesh> meshes, Vector3f boundingBoxMin, Vector3f boundingBoxMax) {
+        this(name, meshes, Collections.nCopies(meshes.size(), null), boundingBoxMin, boundingBoxMax);
+    }
+
+    /**
+     * @param materials one entry per mesh, {@code null} for meshes without a material
+     */
+    public Model(String name, List<Mesh> meshes, List<Material> materials,
+                 Vector3f boundingBoxMin, Vector3f boundingBoxMax) {
         this.name = name;
         this.meshes = meshes;
+        this.materials = materials;
         this.boundingBoxMin = new Vector3f(boundingBoxMin);
         this.boundingBoxMax = new Vector3f(boundingBoxMax);
     }
@@ -33,21 +54,132 @@ public class Model {
     }
 
     public void render(boolean useTexture) {
+        render(useTexture, 0);
+    }
+
+    /**
+     * Renders level of detail {@code lod}; meshes with fewer levels draw their coarsest one.
+     */
+    public void render(boolean useTexture, int lod) {
+        render(useTexture, mesh -> mesh.render(lod));
+    }
+
+    /**
+     * Renders level of detail {@code lod} once per instance, as {@link #render(boolean, int)}, for {@code count}
+     * instances of {@code instances} from {@code first} on.
+     */
+    public void renderInstanced(boolean useTexture, int lod, InstanceBuffer instances, int first, int count) {
+        render(useTexture, mesh -> mesh.renderInstanced(lod, instances, first, count));
+    }
+
+    private void render(boolean useTexture, Consumer<Mesh> draw) {
         for (Mesh mesh : meshes) {
             // Only render meshes that have texture coordinates when using texture
             if (!useTexture || mesh.hasTextureCoords()) {
-                mesh.render();
+                draw.accept(mesh);
             }
         }
     }
 
+    /**
+     * Renders every mesh with its material. Meshes are stored in material order, so uniforms and the bound
+     * texture are only updated when they actually change between consecutive meshes. Meshes without a diffuse
+     * map of their own fall back to the model texture.
+     */
+    public void render(ShaderProgram shader, Vector3f tint) {
+        render(shader, tint, 0);
+    }
+
+    /**
+     * Renders level of detail {@code lod} with materials, as {@link #render(ShaderProgram, Vector3f)}.
+     */
+    public void render(ShaderProgram shader, Vector3f tint, int lod) {
+        render(shader, tint, mesh -> mesh.render(lod));
+    }
+
+    /**
+     * Renders level of detail {@code lod} with materials once per instance, the material colours tinted by each
+     * instance's colour rather than a uniform one.
+     */
+    public void renderInstanced(ShaderProgram shader, int lod, InstanceBuffer instances, int first, int count) {
+        render(shader, WHITE, mesh -> mesh.renderInstanced(lod, instances, first, count));
+    }
+
+    private void render(ShaderProgram shader, Vector3f tint, Consumer<Mesh> draw) {
+        Vector3f color = new Vector3f();
+        boolean first = true;
+        Material appliedMaterial = null;
+        Texture boundTexture = null;
+        boolean blending = false;
+
+        for (int i = 0; i < meshes.size(); i++) {
+            Mesh mesh = meshes.get(i);
+            Material material = materials.get(i);
+
+            if (first || material != appliedMaterial) {
+                color.set(tint);
+                float alpha = 1.0f;
+                if (material != null) {
+                    color.mul(material.getDiffuseColor());
+                    alpha = material.getAlpha();
+                }
+                shader.setUniform("objectColor", color);
+                if (alpha < 1.0f != blending) {
+                    blending = alpha < 1.0f;
+                    GLState.setEnabled(GL_BLEND, blending);
+                    if (blending) {
+                        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+                    }
+                    shader.setUniform("isTransparent", blending);
+                }
+                if (blending) {
+                    shader.setUniform("transparency", alpha);
+                }
+                appliedMaterial = material;
+            }
+
+            Texture meshTexture = null;
+            if (mesh.hasTextureCoords()) {
+                meshTexture = material != null && material.getDiffuseTexture() != null
+                    ? material.getDiffuseTexture() : texture;
+            }
+            if (first || meshTexture != boundTexture) {
+                if (meshTexture != null) {
+                    meshTexture.bind(0);
+                }
+                shader.setUniform("useTexture", meshTexture != null);
+                boundTexture = meshTexture;
+            }
+
+            first = false;
+            draw.accept(mesh);
+        }
+
+        if (blending) {
+            GLState.setEnabled(GL_BLEND, false);
+            shader.setUniform("isTransparent", false);
+        }
+    }
+
+    /**
+     * Frees the meshes. Textures are shared between models and owned by {@link AssetManager}, so they are left
+     * alone.
+     */
     public void cleanup() {
         for (Mesh mesh : meshes) {
             mesh.cleanup();
         }
-        if (texture != null) {
-            texture.cleanup();
+    }
+
+    /**
+     * GPU bytes of the meshes, not counting the shared textures.
+     */
+    public long getGpuBytes() {
+        long bytes = 0;
+        for (Mesh mesh : meshes) {
+            bytes += mesh.getGpuBytes();
         }
+        return bytes;
     }
 
     public String getName() {
@@ -58,6 +190,35 @@ public class Model {
         return meshes;
     }
 
+    /**
+     * Returns the material of each mesh, in mesh order; entries are {@code null} for meshes without one.
+     */
+    public List<Material> getMaterials() {
+        return materials;
+    }
+
+    public boolean hasMaterials() {
+        return materials.stream().anyMatch(Objects::nonNull);
+    }
+
+    /**
+     * Whether any mesh has a translucent material, so the model is drawn with blending.
+     */
+    public boolean isTransparent() {
+        return materials.stream().anyMatch(material -> material != null && material.isTransparent());
+    }
+
+    /**
+     * Number of levels of detail of the most detailed mesh; 1 if the model was not simplified.
+     */
+    public int getLodCount() {
+        int count = 1;
+        for (Mesh mesh : meshes) {
+            count = Math.max(count, mesh.getLodCount());
+        }
+        return count;
+    }
+
     public Vector3f getBoundingBoxMin() {
         return new Vector3f(boundingBoxMin);
     }
@@ -0,0 +1,63 @@
+package com.sim3d.loader;
+
+import com.sim3d.graphics.Mesh;
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A loaded model before GPU upload: its meshes as {@link MeshData}, the bounding box and the materials from the
+ * referenced MTL libraries.
+ */
+final class ModelData {
+    private static final Logger logger = LoggerFactory.getLogger(ModelData.class);
+
+    final String name;
+    final List<MeshData> meshes;
+    final Vector3f boundingBoxMin;
+    final Vector3f boundingBoxMax;
+    final List<String> materialLibraries;
+    final Map<String, Material> materials;
+
+    ModelData(String name, List<MeshData> meshes, Vector3f boundingBoxMin, Vector3f boundingBoxMax,
+              List<String> materialLibraries, Map<String, Material> materials) {
+        this.name = name;
+        this.meshes = meshes;
+        this.boundingBoxMin = boundingBoxMin;
+        this.boundingBoxMax = boundingBoxMax;
+        this.materialLibraries = materialLibraries;
+        this.materials = materials;
+    }
+
+    /**
+     * Bytes of encoded vertices and indices held for upload.
+     */
+    long byteCount() {
+        long bytes = 0;
+        for (MeshData mesh : meshes) {
+            bytes += mesh.vertexByteCount() + mesh.indexByteCount();
+        }
+        return bytes;
+    }
+
+    Model upload() {
+        List<Mesh> uploaded = new ArrayList<>(meshes.size());
+        List<Material> meshMaterials = new ArrayList<>(meshes.size());
+        for (MeshData mesh : meshes) {
+            uploaded.add(mesh.upload());
+            Material material = null;
+            if (mesh.materialName() != null) {
+                material = materials.get(mesh.materialName());
+                if (material == null) {
+                    logger.warn("Material '{}' used by model '{}' is not defined", mesh.materialName(), name);
+                }
+            }
+            meshMaterials.add(material);
+        }
+        return new Model(name, uploaded, meshMaterials, boundingBoxMin, boundingBoxMax);
+    }
+}
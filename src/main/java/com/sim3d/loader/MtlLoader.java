@@ -0,0 +1,103 @@
+package com.sim3d.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the MTL libraries referenced by an OBJ file. Only the directives the renderer can use are
+ * interpreted: {@code newmtl}, {@code Kd}, {@code map_Kd}, {@code d} and {@code Tr}.
+ */
+final class MtlLoader {
+    private static final Logger logger = LoggerFactory.getLogger(MtlLoader.class);
+
+    private MtlLoader() {}
+
+    /**
+     * Loads every library in {@code libraries}, resolved relative to the OBJ at {@code sourcePath}. Later
+     * definitions of the same material name replace earlier ones.
+     */
+    static Map<String, Material> load(List<String> libraries, String sourcePath, boolean fromFile) {
+        Map<String, Material> materials = new LinkedHashMap<>();
+        for (String library : libraries) {
+            String path = resolveSibling(sourcePath, library);
+            try (BufferedReader reader = open(path, fromFile)) {
+                if (reader == null) {
+                    logger.warn("Material library not found: {}", path);
+                    continue;
+                }
+                parse(reader, path, materials);
+            } catch (IOException e) {
+                logger.warn("Failed to load material library: {}", path, e);
+            }
+        }
+        return materials;
+    }
+
+    private static BufferedReader open(String path, boolean fromFile) throws IOException {
+        if (fromFile) {
+            Path file = Path.of(path);
+            return Files.isRegularFile(file) ? Files.newBufferedReader(file, StandardCharsets.UTF_8) : null;
+        }
+        try (AssetBytes bytes = AssetPack.getInstance().read(path)) {
+            return bytes != null ? new BufferedReader(new StringReader(bytes.asString())) : null;
+        }
+    }
+
+    private static void parse(BufferedReader reader, String path, Map<String, Material> materials) throws IOException {
+        Material current = null;
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] parts = line.split("\\s+");
+            String keyword = parts[0];
+            try {
+                if (keyword.equals("newmtl")) {
+                    String name = line.substring(keyword.length()).trim();
+                    current = new Material(name);
+                    materials.put(name, current);
+                } else if (current == null) {
+                    continue;
+                } else if (keyword.equals("Kd") && parts.length >= 4) {
+                    current.setDiffuseColor(Float.parseFloat(parts[1]), Float.parseFloat(parts[2]),
+                        Float.parseFloat(parts[3]));
+                } else if (keyword.equals("d") && parts.length >= 2) {
+                    current.setAlpha(Float.parseFloat(parts[parts.length - 1]));
+                } else if (keyword.equals("Tr") && parts.length >= 2) {
+                    current.setAlpha(1.0f - Float.parseFloat(parts[parts.length - 1]));
+                } else if (keyword.equals("map_Kd") && parts.length >= 2) {
+                    // Map options (-s, -o, -bm, ...) precede the file name
+                    current.setDiffuseTexturePath(resolveSibling(path, parts[parts.length - 1]));
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Parse error at line {} of {}: {}", lineNumber, path, line);
+            }
+        }
+        logger.debug("Loaded {} material(s) from {}", materials.size(), path);
+    }
+
+    /**
+     * Resolves {@code name} against the directory of {@code path}, keeping forward slashes so the result also
+     * works as a classpath resource name.
+     */
+    static String resolveSibling(String path, String name) {
+        int lastSlash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        String resolved = (lastSlash >= 0 ? path.substring(0, lastSlash + 1) : "") + name.replace('\\', '/');
+        return Path.of(resolved).normalize().toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,59 @@
+package com.sim3d.loader;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Direct buffers recycled by power-of-two size class, so decompressing or decoding assets does not allocate native
+ * memory for every load. Each class keeps at most a few released buffers; anything beyond that, and requests larger
+ * than the biggest class, is left to the garbage collector.
+ */
+public final class NativeBufferPool {
+    private static final int MIN_CLASS_BITS = 12;
+    private static final int MAX_CLASS_BITS = 26;
+    private static final int BUFFERS_PER_CLASS = 4;
+
+    private static final List<Queue<ByteBuffer>> classes = new ArrayList<>();
+
+    static {
+        for (int i = MIN_CLASS_BITS; i <= MAX_CLASS_BITS; i++) {
+            classes.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    private NativeBufferPool() {}
+
+    /**
+     * Returns a direct buffer with position 0 and limit {@code size}. Its contents are undefined.
+     */
+    public static ByteBuffer acquire(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass < 0) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        ByteBuffer buffer = classes.get(sizeClass).poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_CLASS_BITS));
+        }
+        return buffer.clear().limit(size);
+    }
+
+    /**
+     * Returns a buffer from {@link #acquire(int)} to the pool. The caller must not use it afterwards.
+     */
+    public static void release(ByteBuffer buffer) {
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass >= 0 && buffer.capacity() == 1 << (sizeClass + MIN_CLASS_BITS)
+                && classes.get(sizeClass).size() < BUFFERS_PER_CLASS) {
+            classes.get(sizeClass).offer(buffer);
+        }
+    }
+
+    private static int sizeClass(int size) {
+        int bits = Math.max(MIN_CLASS_BITS, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+        return bits <= MAX_CLASS_BITS ? bits - MIN_CLASS_BITS : -1;
+    }
+}
@@ -0,0 +1,176 @@
+package com.sim3d.loader;
+
+import com.sim3d.loader.ObjData.Group;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates smooth per-corner normals for triangles without {@code vn} data. Face normals are accumulated
+ * area-weighted around every position, but only from faces within the crease angle of the corner's own face, so
+ * hard edges stay sharp. Positions are welded by coordinates first, so seams that duplicate a vertex (for example
+ * along a texture seam) are still smoothed. Results are stored in {@link Group#generatedNormals}.
+ */
+final class NormalGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(NormalGenerator.class);
+
+    private NormalGenerator() {}
+
+    static void generate(ObjData data, float creaseAngle) {
+        int positionCount = data.positionCount();
+        int triangleCount = 0;
+        for (Group group : data.groups) {
+            for (int triangle = 0; triangle < group.triangleCount(); triangle++) {
+                if (needsNormal(group.corners.array(), triangle * 9, positionCount)) {
+                    triangleCount++;
+                }
+            }
+        }
+        if (triangleCount == 0) {
+            return;
+        }
+
+        int[] clusters = weldPositions(data);
+        int clusterCount = 0;
+        for (int cluster : clusters) {
+            clusterCount = Math.max(clusterCount, cluster + 1);
+        }
+
+        // Unnormalized face normals (length = twice the area) and the cluster of every corner
+        float[] faceNormals = new float[triangleCount * 3];
+        float[] faceLengths = new float[triangleCount];
+        int[] cornerClusters = new int[triangleCount * 3];
+        int[] adjacencyStart = new int[clusterCount + 1];
+        float[] positions = data.positions.array();
+
+        int t = 0;
+        for (Group group : data.groups) {
+            int[] corners = group.corners.array();
+            for (int triangle = 0; triangle < group.triangleCount(); triangle++) {
+                int c = triangle * 9;
+                if (!needsNormal(corners, c, positionCount)) {
+                    continue;
+                }
+                int p1 = corners[c] * 3;
+                int p2 = corners[c + 3] * 3;
+                int p3 = corners[c + 6] * 3;
+                float e1x = positions[p2] - positions[p1];
+                float e1y = positions[p2 + 1] - positions[p1 + 1];
+                float e1z = positions[p2 + 2] - positions[p1 + 2];
+                float e2x = positions[p3] - positions[p1];
+                float e2y = positions[p3 + 1] - positions[p1 + 1];
+                float e2z = positions[p3 + 2] - positions[p1 + 2];
+                float nx = e1y * e2z - e1z * e2y;
+                float ny = e1z * e2x - e1x * e2z;
+                float nz = e1x * e2y - e1y * e2x;
+                faceNormals[t * 3] = nx;
+                faceNormals[t * 3 + 1] = ny;
+                faceNormals[t * 3 + 2] = nz;
+                faceLengths[t] = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+                for (int k = 0; k < 3; k++) {
+                    int cluster = clusters[corners[c + k * 3]];
+                    cornerClusters[t * 3 + k] = cluster;
+                    adjacencyStart[cluster + 1]++;
+                }
+                t++;
+            }
+        }
+
+        // Triangles around each cluster, in compressed sparse row form
+        for (int i = 0; i < clusterCount; i++) {
+            adjacencyStart[i + 1] += adjacencyStart[i];
+        }
+        int[] adjacency = new int[triangleCount * 3];
+        int[] fill = new int[clusterCount];
+        for (int corner = 0; corner < cornerClusters.length; corner++) {
+            int cluster = cornerClusters[corner];
+            adjacency[adjacencyStart[cluster] + fill[cluster]++] = corner / 3;
+        }
+
+        float cosCrease = (float) Math.cos(Math.toRadians(creaseAngle));
+        t = 0;
+        for (Group group : data.groups) {
+            int[] corners = group.corners.array();
+            for (int triangle = 0; triangle < group.triangleCount(); triangle++) {
+                int c = triangle * 9;
+                if (!needsNormal(corners, c, positionCount)) {
+                    continue;
+                }
+                if (group.generatedNormals == null) {
+                    group.generatedNormals = new float[group.corners.size()];
+                }
+                for (int k = 0; k < 3; k++) {
+                    int cluster = cornerClusters[t * 3 + k];
+                    smoothNormal(t, adjacency, adjacencyStart[cluster], adjacencyStart[cluster + 1],
+                        faceNormals, faceLengths, cosCrease, group.generatedNormals, c + k * 3);
+                }
+                t++;
+            }
+        }
+
+        logger.debug("Generated smooth normals for {} triangles around {} welded positions", triangleCount,
+            clusterCount);
+    }
+
+    private static void smoothNormal(int triangle, int[] adjacency, int from, int to, float[] faceNormals,
+                                     float[] faceLengths, float cosCrease, float[] target, int offset) {
+        float nx = faceNormals[triangle * 3];
+        float ny = faceNormals[triangle * 3 + 1];
+        float nz = faceNormals[triangle * 3 + 2];
+        float length = faceLengths[triangle];
+
+        float sx = 0;
+        float sy = 0;
+        float sz = 0;
+        for (int i = from; i < to; i++) {
+            int other = adjacency[i];
+            float ox = faceNormals[other * 3];
+            float oy = faceNormals[other * 3 + 1];
+            float oz = faceNormals[other * 3 + 2];
+            // Degenerate faces have no direction of their own and take all neighbours
+            if (length == 0 || nx * ox + ny * oy + nz * oz >= cosCrease * length * faceLengths[other]) {
+                sx += ox;
+                sy += oy;
+                sz += oz;
+            }
+        }
+
+        float sum = (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+        if (sum > 0) {
+            target[offset] = sx / sum;
+            target[offset + 1] = sy / sum;
+            target[offset + 2] = sz / sum;
+        } else {
+            target[offset] = 0.0f;
+            target[offset + 1] = 1.0f;
+            target[offset + 2] = 0.0f;
+        }
+    }
+
+    private static boolean needsNormal(int[] corners, int c, int positionCount) {
+        for (int k = 0; k < 9; k += 3) {
+            int position = corners[c + k];
+            if (position < 0 || position >= positionCount) {
+                return false;
+            }
+        }
+        return corners[c + 2] < 0 || corners[c + 5] < 0 || corners[c + 8] < 0;
+    }
+
+    /**
+     * Maps every position index to the first position with identical coordinates.
+     */
+    private static int[] weldPositions(ObjData data) {
+        int count = data.positionCount();
+        float[] positions = data.positions.array();
+        IndexedMeshBuilder welder = new IndexedMeshBuilder(3, count);
+        float[] position = new float[3];
+        for (int i = 0; i < count; i++) {
+            // Adding 0 turns -0.0 into 0.0 so both weld together
+            position[0] = positions[i * 3] + 0.0f;
+            position[1] = positions[i * 3 + 1] + 0.0f;
+            position[2] = positions[i * 3 + 2] + 0.0f;
+            welder.add(position);
+        }
+        return welder.indices().toArray();
+    }
+}
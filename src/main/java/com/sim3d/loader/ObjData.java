@@ -0,0 +1,79 @@
+package com.sim3d.loader;
+
+import com.sim3d.graphics.FloatArrayBuilder;
+import com.sim3d.graphics.IntArrayBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Raw OBJ attributes and triangulated faces as produced by {@link ObjParser}, stored in primitive arrays.
+ */
+final class ObjData {
+    static final int NO_INDEX = -1;
+
+    final FloatArrayBuilder positions = new FloatArrayBuilder(3 * 256);
+    final FloatArrayBuilder texCoords = new FloatArrayBuilder(2 * 256);
+    final FloatArrayBuilder normals = new FloatArrayBuilder(3 * 256);
+
+    final List<Group> groups = new ArrayList<>();
+    final List<String> materialLibraries = new ArrayList<>();
+
+    int positionCount() {
+        return positions.size() / 3;
+    }
+
+    int texCoordCount() {
+        return texCoords.size() / 2;
+    }
+
+    int normalCount() {
+        return normals.size() / 3;
+    }
+
+    /**
+     * A run of faces sharing one object/group and one material ({@code null} without {@code usemtl}).
+     * Every triangle corner is stored as three consecutive ints: position, texture coordinate and normal
+     * index (zero based, {@link #NO_INDEX} when absent).
+     */
+    static final class Group {
+        String name;
+        String material;
+        final IntArrayBuilder corners = new IntArrayBuilder(3 * 3 * 64);
+        boolean hasTextureCoords = false;
+        // Set on chunk segments whose material was chosen before the chunk started
+        boolean inheritsMaterial;
+        // Corner slots holding chunk-relative indices, only used while stitching parallel chunks
+        IntArrayBuilder relativeSlots;
+        // Smoothed normals parallel to corners for triangles without vn data, see NormalGenerator
+        float[] generatedNormals;
+
+        Group(String name, String material) {
+            this.name = name;
+            this.material = material;
+        }
+
+        void addCorner(int position, int texCoord, int normal) {
+            corners.add(position, texCoord, normal);
+        }
+
+        void addRelativeSlot(int slot) {
+            if (relativeSlots == null) {
+                relativeSlots = new IntArrayBuilder();
+            }
+            relativeSlots.add(slot);
+        }
+
+        int cornerCount() {
+            return corners.size() / 3;
+        }
+
+        int triangleCount() {
+            return corners.size() / 9;
+        }
+
+        boolean isEmpty() {
+            return corners.isEmpty();
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package com.sim3d.loader;
 
-import com.sim3d.graphics.Mesh;
+import com.sim3d.graphics.VertexFormat;
+import com.sim3d.loader.ObjData.Group;
 import org.joml.Vector3f;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public final class ObjLoader {
     private static final Logger logger = LoggerFactory.getLogger(ObjLoader.class);
@@ -18,289 +26,289 @@ public final class ObjLoader {
     private ObjLoader() {}
 
     public static Model load(String resourcePath) {
-        logger.debug("Loading OBJ model from resource: {}", resourcePath);
-        try (InputStream is = ObjLoader.class.getClassLoader().getResourceAsStream(resourcePath)) {
-            if (is == null) {
-                logger.warn("Resource not found: {}", resourcePath);
-                return null;
-            }
-            return parseObj(new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)), resourcePath);
-        } catch (IOException e) {
-            logger.warn("Failed to load OBJ resource: {}", resourcePath, e);
-            return null;
+        try (AssetBytes bytes = readResource(resourcePath)) {
+            ModelData data = bytes != null
+                ? parse(bytes.buffer(), resourcePath, false, MeshOptions.fromSettings()) : null;
+            return data != null ? data.upload() : null;
         }
     }
 
     public static Model loadFromFile(String filePath) {
+        ByteBuffer buffer = mapFile(filePath);
+        ModelData data = buffer != null ? parse(buffer, filePath, true, MeshOptions.fromSettings()) : null;
+        return data != null ? data.upload() : null;
+    }
+
+    static AssetBytes readResource(String resourcePath) {
+        logger.debug("Loading OBJ model from resource: {}", resourcePath);
+        AssetBytes bytes = AssetPack.getInstance().read(resourcePath);
+        if (bytes == null) {
+            logger.warn("Resource not found: {}", resourcePath);
+        }
+        return bytes;
+    }
+
+    static ByteBuffer mapFile(String filePath) {
         logger.debug("Loading OBJ model from file: {}", filePath);
-        try (BufferedReader reader = Files.newBufferedReader(Path.of(filePath), StandardCharsets.UTF_8)) {
-            return parseObj(reader, filePath);
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                logger.warn("OBJ file too large to map: {} ({} bytes)", filePath, channel.size());
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
         } catch (IOException e) {
             logger.warn("Failed to load OBJ file: {}", filePath, e);
             return null;
         }
     }
 
-    private static Model parseObj(BufferedReader reader, String sourcePath) throws IOException {
-        List<Vector3f> positions = new ArrayList<>();
-        List<float[]> texCoords = new ArrayList<>();
-        List<Vector3f> normals = new ArrayList<>();
-
-        List<MeshData> meshDataList = new ArrayList<>();
-        MeshData currentMesh = new MeshData("default");
-
-        String line;
-        int lineNumber = 0;
-
-        while ((line = reader.readLine()) != null) {
-            lineNumber++;
-            line = line.trim();
+    static ModelData parse(ByteBuffer buffer, String sourcePath, boolean fromFile, MeshOptions options) {
+        ObjData data = ParallelObjParser.parse(buffer);
 
-            if (line.isEmpty() || line.startsWith("#")) {
-                continue;
-            }
-
-            String[] tokens = line.split("\\s+");
-            if (tokens.length == 0) continue;
-
-            try {
-                switch (tokens[0]) {
-                    case "v" -> {
-                        if (tokens.length >= 4) {
-                            positions.add(new Vector3f(
-                                Float.parseFloat(tokens[1]),
-                                Float.parseFloat(tokens[2]),
-                                Float.parseFloat(tokens[3])
-                            ));
-                        }
-                    }
-                    case "vt" -> {
-                        if (tokens.length >= 3) {
-                            texCoords.add(new float[] {
-                                Float.parseFloat(tokens[1]),
-                                Float.parseFloat(tokens[2])
-                            });
-                        }
-                    }
-                    case "vn" -> {
-                        if (tokens.length >= 4) {
-                            normals.add(new Vector3f(
-                                Float.parseFloat(tokens[1]),
-                                Float.parseFloat(tokens[2]),
-                                Float.parseFloat(tokens[3])
-                            ).normalize());
-                        }
-                    }
-                    case "f" -> parseFace(tokens, positions, texCoords, normals, currentMesh, lineNumber);
-                    case "o", "g" -> {
-                        if (tokens.length >= 2) {
-                            if (!currentMesh.faces.isEmpty()) {
-                                meshDataList.add(currentMesh);
-                            }
-                            currentMesh = new MeshData(tokens[1]);
-                            logger.debug("New object/group: {}", tokens[1]);
-                        }
-                    }
-                    case "mtllib" -> {
-                        if (tokens.length >= 2) {
-                            logger.debug("Material library referenced (not yet supported): {}", tokens[1]);
-                        }
-                    }
-                    case "usemtl" -> {
-                        if (tokens.length >= 2) {
-                            logger.debug("Material used (not yet supported): {}", tokens[1]);
-                        }
-                    }
-                    case "s" -> {}
-                    default -> logger.trace("Ignoring OBJ directive: {}", tokens[0]);
-                }
-            } catch (NumberFormatException e) {
-                logger.warn("Parse error at line {}: {}", lineNumber, line);
-            }
+        if (data.groups.isEmpty()) {
+            logger.warn("No mesh data found in OBJ file: {}", sourcePath);
+            return null;
         }
-
-        if (!currentMesh.faces.isEmpty()) {
-            meshDataList.add(currentMesh);
+        if (options.smoothNormals) {
+            NormalGenerator.generate(data, options.creaseAngle);
         }
 
-        if (meshDataList.isEmpty()) {
-            logger.warn("No mesh data found in OBJ file: {}", sourcePath);
-            return null;
+        Map<String, Material> materials = MtlLoader.load(data.materialLibraries, sourcePath, fromFile);
+        Map<SubmeshKey, List<Group>> submeshes = new LinkedHashMap<>();
+        for (Group group : data.groups) {
+            submeshes.computeIfAbsent(new SubmeshKey(group.material, group.hasTextureCoords), key -> new ArrayList<>())
+                .add(group);
         }
+        List<SubmeshKey> order = new ArrayList<>(submeshes.keySet());
+        order.sort(submeshOrder(materials));
 
-        List<Mesh> meshes = new ArrayList<>();
         Vector3f boundingMin = new Vector3f(Float.MAX_VALUE);
         Vector3f boundingMax = new Vector3f(-Float.MAX_VALUE);
+        int cornerCount = 0;
+        int vertexCount = 0;
+        long bytesSaved = 0;
+        long floatBytes = 0;
+
+        // Optimizing and encoding are independent per submesh and run on the common pool
+        List<ForkJoinTask<EncodedSubmesh>> tasks = new ArrayList<>();
+        for (SubmeshKey key : order) {
+            IndexedMeshBuilder indexed = buildIndexedMesh(submeshes.get(key), key.hasTextureCoords(), data,
+                boundingMin, boundingMax);
+            if (indexed.indexCount() == 0) {
+                continue;
+            }
+            // Counted before the task starts, as it appends the simplified levels to the same index array
+            int stride = vertexStride(key.hasTextureCoords());
+            cornerCount += indexed.indexCount();
+            vertexCount += indexed.vertexCount();
+            bytesSaved += (long) (indexed.indexCount() - indexed.vertexCount()) * stride * Float.BYTES;
+            floatBytes += ((long) indexed.vertexCount() * stride + indexed.indexCount()) * Float.BYTES;
+
+            VertexFormat format = options.vertexFormat(key.hasTextureCoords());
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                int[] misses = options.optimize
+                    ? MeshOptimizer.optimize(indexed.vertices(), indexed.indices(), format.sourceStride())
+                    : null;
+                int[] lodIndexCounts = MeshSimplifier.appendLevels(indexed.vertices(), indexed.indices(),
+                    format.sourceStride(), options.lodLevels, options.optimize);
+                return new EncodedSubmesh(MeshData.encode(indexed.vertices(), indexed.indices(), format,
+                    key.material(), lodIndexCounts), misses);
+            }));
+        }
 
-        for (MeshData meshData : meshDataList) {
-            boolean hasTexCoords = meshData.hasTextureCoords;
-            float[] vertices = buildVertexArray(meshData, positions, texCoords, normals, boundingMin, boundingMax);
-            int[] indices = buildIndexArray(meshData.faces.size() * 3);
-            meshes.add(new Mesh(vertices, indices, hasTexCoords));
+        List<MeshData> meshes = new ArrayList<>(tasks.size());
+        long missesBefore = 0;
+        long missesAfter = 0;
+        long encodedBytes = 0;
+        long[] lodTriangles = new long[options.lodLevels + 1];
+        for (ForkJoinTask<EncodedSubmesh> task : tasks) {
+            EncodedSubmesh submesh = task.join();
+            meshes.add(submesh.mesh());
+            int[] lodIndexCounts = submesh.mesh().lodIndexCounts();
+            for (int lod = 0; lod < lodTriangles.length; lod++) {
+                // Meshes that stopped simplifying early draw their coarsest level in its place
+                lodTriangles[lod] += lodIndexCounts[Math.min(lod, lodIndexCounts.length - 1)] / 3;
+            }
+            encodedBytes += submesh.mesh().vertexByteCount() + submesh.mesh().indexByteCount();
+            if (submesh.cacheMisses() != null) {
+                missesBefore += submesh.cacheMisses()[0];
+                missesAfter += submesh.cacheMisses()[1];
+            }
         }
 
         String modelName = extractModelName(sourcePath);
-        logger.info("Loaded OBJ model '{}' with {} mesh(es)", modelName, meshes.size());
+        if (options.optimize && cornerCount > 0) {
+            int triangles = cornerCount / 3;
+            logger.info("Optimized OBJ model '{}' for vertex cache and fetch: ACMR {} -> {}", modelName,
+                String.format("%.3f", (float) missesBefore / triangles),
+                String.format("%.3f", (float) missesAfter / triangles));
+        }
+        if (options.lodLevels > 0 && cornerCount > 0) {
+            logger.info("Simplified OBJ model '{}' into {} levels of detail: {} triangles", modelName,
+                lodTriangles.length, Arrays.toString(lodTriangles));
+        }
+        logger.info("Loaded OBJ model '{}' with {} mesh(es) from {} group(s), {} material(s)",
+            modelName, meshes.size(), data.groups.size(), materials.size());
+        if (vertexCount > 0) {
+            logger.info("Indexed OBJ model '{}': {} corners -> {} vertices ({}x dedup, {} KB of vertex data saved)",
+                modelName, cornerCount, vertexCount, String.format("%.2f", (float) cornerCount / vertexCount),
+                bytesSaved / 1024);
+            logger.info("Encoded OBJ model '{}': {} KB as float vertices and 32-bit indices -> {} KB", modelName,
+                floatBytes / 1024, encodedBytes / 1024);
+        }
 
-        return new Model(modelName, meshes, boundingMin, boundingMax);
+        return new ModelData(modelName, meshes, boundingMin, boundingMax, data.materialLibraries, materials);
     }
 
-    private static void parseFace(String[] tokens, List<Vector3f> positions, List<float[]> texCoords, List<Vector3f> normals,
-                                   MeshData meshData, int lineNumber) {
-        if (tokens.length < 4) {
-            logger.warn("Face with less than 3 vertices at line {}", lineNumber);
-            return;
-        }
+    /**
+     * Submeshes are merged per material and ordered so a model renders opaque before transparent geometry and
+     * materials sharing a diffuse map are drawn back to back, keeping texture and uniform changes to a minimum.
+     */
+    private static Comparator<SubmeshKey> submeshOrder(Map<String, Material> materials) {
+        Comparator<String> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+        return Comparator
+            .comparing((SubmeshKey key) -> isTransparent(materials.get(key.material())))
+            .thenComparing(key -> texturePath(materials.get(key.material())), nullsFirst)
+            .thenComparing(SubmeshKey::material, nullsFirst)
+            .thenComparing(SubmeshKey::hasTextureCoords);
+    }
 
-        List<int[]> faceVertices = new ArrayList<>();
-        for (int i = 1; i < tokens.length; i++) {
-            int[] indices = parseFaceVertex(tokens[i], positions.size(), texCoords.size(), normals.size());
-            if (indices != null) {
-                faceVertices.add(indices);
-                // Check if this vertex has texture coordinates
-                if (indices[1] >= 0) {
-                    meshData.hasTextureCoords = true;
-                }
-            }
-        }
+    private static boolean isTransparent(Material material) {
+        return material != null && material.isTransparent();
+    }
 
-        if (faceVertices.size() >= 3) {
-            for (int i = 1; i < faceVertices.size() - 1; i++) {
-                meshData.faces.add(new Face(
-                    faceVertices.get(0),
-                    faceVertices.get(i),
-                    faceVertices.get(i + 1)
-                ));
-            }
-        }
+    private static String texturePath(Material material) {
+        return material != null ? material.getDiffuseTexturePath() : null;
     }
 
-    private static int[] parseFaceVertex(String token, int posCount, int texCount, int normCount) {
-        String[] parts = token.split("/", -1);
-        int[] result = new int[] { -1, -1, -1 };
+    private record SubmeshKey(String material, boolean hasTextureCoords) {}
 
-        try {
-            if (parts.length >= 1 && !parts[0].isEmpty()) {
-                result[0] = resolveIndex(Integer.parseInt(parts[0]), posCount);
-            }
-            if (parts.length >= 2 && !parts[1].isEmpty()) {
-                result[1] = Integer.parseInt(parts[1]) - 1;
-            }
-            if (parts.length >= 3 && !parts[2].isEmpty()) {
-                result[2] = resolveIndex(Integer.parseInt(parts[2]), normCount);
-            }
-        } catch (NumberFormatException e) {
-            return null;
-        }
+    private record EncodedSubmesh(MeshData mesh, int[] cacheMisses) {}
 
-        return result;
+    private static int vertexStride(boolean hasTextureCoords) {
+        return hasTextureCoords ? VertexFormat.SOURCE_STRIDE_TEXTURED : VertexFormat.SOURCE_STRIDE;
     }
 
-    private static int resolveIndex(int index, int size) {
-        if (index < 0) {
-            return size + index;
+    private static IndexedMeshBuilder buildIndexedMesh(List<Group> groups, boolean hasTextureCoords, ObjData data,
+                                                       Vector3f boundingMin, Vector3f boundingMax) {
+        int stride = vertexStride(hasTextureCoords);
+        int expectedCorners = 0;
+        for (Group group : groups) {
+            expectedCorners += group.cornerCount();
         }
-        return index - 1;
-    }
+        IndexedMeshBuilder indexed = new IndexedMeshBuilder(stride, expectedCorners);
+        float[] vertex = new float[stride];
+        float[] faceNormal = new float[3];
+        Vector3f scratch = new Vector3f();
+        Vector3f edge = new Vector3f();
+
+        for (Group group : groups) {
+            int[] corners = group.corners.array();
+            for (int triangle = 0; triangle < group.triangleCount(); triangle++) {
+                int c1 = triangle * 9;
+                int c2 = c1 + 3;
+                int c3 = c1 + 6;
+                if (!isValidPosition(corners[c1], data) || !isValidPosition(corners[c2], data)
+                        || !isValidPosition(corners[c3], data)) {
+                    logger.warn("Skipping triangle with out-of-range vertex index in mesh '{}'", group.name);
+                    continue;
+                }
 
-    private static float[] buildVertexArray(MeshData meshData, List<Vector3f> positions, List<float[]> texCoords,
-                                             List<Vector3f> normals, Vector3f boundingMin, Vector3f boundingMax) {
-        List<Float> vertexList = new ArrayList<>();
-
-        for (Face face : meshData.faces) {
-            Vector3f faceNormal = null;
-            if (face.v1[2] < 0 || face.v2[2] < 0 || face.v3[2] < 0) {
-                faceNormal = calculateFaceNormal(
-                    positions.get(face.v1[0]),
-                    positions.get(face.v2[0]),
-                    positions.get(face.v3[0])
-                );
-            }
+                boolean missingNormal = corners[c1 + 2] < 0 || corners[c2 + 2] < 0 || corners[c3 + 2] < 0;
+                float[] fallbackNormals = null;
+                if (missingNormal && group.generatedNormals != null) {
+                    fallbackNormals = group.generatedNormals;
+                } else if (missingNormal) {
+                    calculateFaceNormal(data.positions.array(), corners[c1], corners[c2], corners[c3], faceNormal,
+                        scratch, edge);
+                    fallbackNormals = faceNormal;
+                }
 
-            addVertex(vertexList, positions, texCoords, normals, face.v1, faceNormal, boundingMin, boundingMax, meshData.hasTextureCoords);
-            addVertex(vertexList, positions, texCoords, normals, face.v2, faceNormal, boundingMin, boundingMax, meshData.hasTextureCoords);
-            addVertex(vertexList, positions, texCoords, normals, face.v3, faceNormal, boundingMin, boundingMax, meshData.hasTextureCoords);
+                for (int corner = c1; corner <= c3; corner += 3) {
+                    int fallbackOffset = fallbackNormals == faceNormal ? 0 : corner;
+                    writeVertex(vertex, data, corners, corner, fallbackNormals, fallbackOffset,
+                        boundingMin, boundingMax, scratch, hasTextureCoords);
+                    indexed.add(vertex);
+                }
+            }
         }
 
-        float[] result = new float[vertexList.size()];
-        for (int i = 0; i < vertexList.size(); i++) {
-            result[i] = vertexList.get(i);
-        }
-        return result;
+        return indexed;
+    }
+
+    private static boolean isValidPosition(int index, ObjData data) {
+        return index >= 0 && index < data.positionCount();
     }
 
-    private static void addVertex(List<Float> vertexList, List<Vector3f> positions, List<float[]> texCoords,
-                                   List<Vector3f> normals, int[] indices, Vector3f faceNormal,
-                                   Vector3f boundingMin, Vector3f boundingMax, boolean hasTextureCoords) {
-        Vector3f pos = positions.get(indices[0]);
-        boundingMin.min(pos);
-        boundingMax.max(pos);
+    /**
+     * @param fallbackNormals normals to use for a corner without vn data, read at {@code fallbackOffset};
+     *                        either the generated smooth normals of the group or the flat face normal
+     */
+    private static void writeVertex(float[] vertex, ObjData data, int[] corners, int corner,
+                                    float[] fallbackNormals, int fallbackOffset, Vector3f boundingMin,
+                                    Vector3f boundingMax, Vector3f scratch, boolean hasTextureCoords) {
+        int p = corners[corner] * 3;
+        int t = corners[corner + 1];
+        int n = corners[corner + 2];
+
+        float[] positions = data.positions.array();
+        scratch.set(positions[p], positions[p + 1], positions[p + 2]);
+        boundingMin.min(scratch);
+        boundingMax.max(scratch);
 
         // Position (3 floats)
-        vertexList.add(pos.x);
-        vertexList.add(pos.y);
-        vertexList.add(pos.z);
+        vertex[0] = scratch.x;
+        vertex[1] = scratch.y;
+        vertex[2] = scratch.z;
 
         // Color (3 floats)
-        vertexList.add(1.0f);
-        vertexList.add(1.0f);
-        vertexList.add(1.0f);
+        vertex[3] = 1.0f;
+        vertex[4] = 1.0f;
+        vertex[5] = 1.0f;
 
         // Normal (3 floats)
-        Vector3f normal;
-        if (indices[2] >= 0 && indices[2] < normals.size()) {
-            normal = normals.get(indices[2]);
-        } else if (faceNormal != null) {
-            normal = faceNormal;
+        if (n >= 0 && n < data.normalCount()) {
+            float[] normals = data.normals.array();
+            vertex[6] = normals[n * 3];
+            vertex[7] = normals[n * 3 + 1];
+            vertex[8] = normals[n * 3 + 2];
+        } else if (fallbackNormals != null) {
+            vertex[6] = fallbackNormals[fallbackOffset];
+            vertex[7] = fallbackNormals[fallbackOffset + 1];
+            vertex[8] = fallbackNormals[fallbackOffset + 2];
         } else {
-            normal = new Vector3f(0, 1, 0);
+            vertex[6] = 0.0f;
+            vertex[7] = 1.0f;
+            vertex[8] = 0.0f;
         }
-        vertexList.add(normal.x);
-        vertexList.add(normal.y);
-        vertexList.add(normal.z);
 
         // Texture coordinates (2 floats) - only add if this mesh has texture coordinates
-        if (hasTextureCoords && indices[1] >= 0 && indices[1] < texCoords.size()) {
-            float[] texCoord = texCoords.get(indices[1]);
-            vertexList.add(texCoord[0]);
-            vertexList.add(texCoord[1]);
+        if (hasTextureCoords && t >= 0 && t < data.texCoordCount()) {
+            float[] texCoords = data.texCoords.array();
+            vertex[9] = texCoords[t * 2];
+            vertex[10] = texCoords[t * 2 + 1];
         } else if (hasTextureCoords) {
             // Default texture coordinates only for meshes that are supposed to have them
-            vertexList.add(0.0f);
-            vertexList.add(0.0f);
+            vertex[9] = 0.0f;
+            vertex[10] = 0.0f;
         }
     }
 
-    private static Vector3f calculateFaceNormal(Vector3f v1, Vector3f v2, Vector3f v3) {
-        Vector3f edge1 = new Vector3f(v2).sub(v1);
-        Vector3f edge2 = new Vector3f(v3).sub(v1);
-        return edge1.cross(edge2).normalize();
+    private static void calculateFaceNormal(float[] positions, int i1, int i2, int i3, float[] result,
+                                            Vector3f normal, Vector3f edge) {
+        float x1 = positions[i1 * 3], y1 = positions[i1 * 3 + 1], z1 = positions[i1 * 3 + 2];
+        normal.set(positions[i2 * 3], positions[i2 * 3 + 1], positions[i2 * 3 + 2]).sub(x1, y1, z1);
+        edge.set(positions[i3 * 3], positions[i3 * 3 + 1], positions[i3 * 3 + 2]).sub(x1, y1, z1);
+        normal.cross(edge).normalize();
+        result[0] = normal.x;
+        result[1] = normal.y;
+        result[2] = normal.z;
     }
 
-    private static int[] buildIndexArray(int count) {
-        int[] indices = new int[count];
-        for (int i = 0; i < count; i++) {
-            indices[i] = i;
-        }
-        return indices;
-    }
-
-    private static String extractModelName(String path) {
+    static String extractModelName(String path) {
         int lastSlash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
         String filename = lastSlash >= 0 ? path.substring(lastSlash + 1) : path;
         int dot = filename.lastIndexOf('.');
         return dot > 0 ? filename.substring(0, dot) : filename;
     }
-
-    private static class MeshData {
-        final String name;
-        final List<Face> faces = new ArrayList<>();
-        boolean hasTextureCoords = false;
-
-        MeshData(String name) {
-            this.name = name;
-        }
-    }
-
-    private record Face(int[] v1, int[] v2, int[] v3) {}
 }
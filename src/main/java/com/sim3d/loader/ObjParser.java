@@ -0,0 +1,459 @@
+package com.sim3d.loader;
+
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte-level OBJ tokenizer. Works in place on a heap or memory-mapped buffer and parses numbers without
+ * creating Strings, so the per-line cost is free of regex, boxing and garbage.
+ */
+final class ObjParser {
+    private static final Logger logger = LoggerFactory.getLogger(ObjParser.class);
+
+    private static final float[] POWERS_OF_TEN = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    // Mantissas up to 2^24 and powers of ten up to 1e10 are exact floats, so one multiply or divide
+    // rounds exactly like Float.parseFloat.
+    private static final long MAX_EXACT_MANTISSA = 1L << 24;
+    private static final int MAX_TOKENS = 3;
+
+    private final ByteBuffer buffer;
+    private final int end;
+    private final boolean chunk;
+    private final ObjData data = new ObjData();
+    private final Vector3f normal = new Vector3f();
+    private final int[] tokenStarts = new int[MAX_TOKENS];
+    private final int[] tokenEnds = new int[MAX_TOKENS];
+
+    private int position;
+    private int lineStart;
+    private int lineEnd;
+    private int lineNumber;
+    private int tokenStart;
+    private int tokenEnd;
+    private int[] faceCorners = new int[3 * 16];
+    private int[] faceRelative = new int[16];
+    private byte[] scratch = new byte[64];
+    private ObjData.Group currentGroup;
+    private boolean materialKnown;
+
+    ObjParser(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit(), false);
+    }
+
+    /**
+     * @param chunk parse {@code [start, end)} as one slice of a larger file: relative indices are resolved
+     *              against this slice only and recorded for later rebasing, and every group segment is kept
+     *              (the first one, named {@code null}, continues the previous slice's group)
+     */
+    ObjParser(ByteBuffer buffer, int start, int end, boolean chunk) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+        this.chunk = chunk;
+        this.currentGroup = new ObjData.Group(chunk ? null : "default", null);
+        this.currentGroup.inheritsMaterial = chunk;
+        this.materialKnown = !chunk;
+    }
+
+    ObjData parse() {
+        while (position < end) {
+            lineNumber++;
+            lineStart = position;
+            lineEnd = findLineEnd(position);
+            try {
+                parseLine();
+            } catch (NumberFormatException e) {
+                logger.warn("Parse error at line {}: {}", lineNumber, lineText());
+            }
+            position = skipLineTerminator(lineEnd);
+        }
+
+        if (chunk || !currentGroup.isEmpty()) {
+            data.groups.add(currentGroup);
+        }
+        return data;
+    }
+
+    private void parseLine() {
+        if (!nextToken() || byteAt(tokenStart) == '#') {
+            return;
+        }
+
+        int length = tokenEnd - tokenStart;
+        byte first = byteAt(tokenStart);
+        if (length == 1) {
+            switch (first) {
+                case 'v' -> parsePosition();
+                case 'f' -> parseFace();
+                case 'o', 'g' -> parseGroup();
+                case 's' -> {}
+                default -> logIgnored();
+            }
+        } else if (length == 2 && first == 'v' && byteAt(tokenStart + 1) == 't') {
+            parseTexCoord();
+        } else if (length == 2 && first == 'v' && byteAt(tokenStart + 1) == 'n') {
+            parseNormal();
+        } else if (tokenEquals("mtllib")) {
+            while (nextToken()) {
+                String library = tokenText();
+                if (!data.materialLibraries.contains(library)) {
+                    data.materialLibraries.add(library);
+                }
+            }
+        } else if (tokenEquals("usemtl")) {
+            parseUseMaterial();
+        } else {
+            logIgnored();
+        }
+    }
+
+    private void parsePosition() {
+        if (collectTokens(3) == 3) {
+            data.positions.add(tokenFloat(0), tokenFloat(1), tokenFloat(2));
+        }
+    }
+
+    private void parseTexCoord() {
+        if (collectTokens(2) == 2) {
+            data.texCoords.add(tokenFloat(0), tokenFloat(1));
+        }
+    }
+
+    private void parseNormal() {
+        if (collectTokens(3) == 3) {
+            normal.set(tokenFloat(0), tokenFloat(1), tokenFloat(2)).normalize();
+            data.normals.add(normal.x, normal.y, normal.z);
+        }
+    }
+
+    private void parseGroup() {
+        if (nextToken()) {
+            if (chunk || !currentGroup.isEmpty()) {
+                data.groups.add(currentGroup);
+            }
+            String name = tokenText();
+            startGroup(name, currentGroup.material);
+            logger.debug("New object/group: {}", name);
+        }
+    }
+
+    private void parseUseMaterial() {
+        String material = restOfLine();
+        if (material.isEmpty()) {
+            return;
+        }
+        if (chunk || !currentGroup.isEmpty()) {
+            data.groups.add(currentGroup);
+        }
+        materialKnown = true;
+        startGroup(currentGroup.name, material);
+    }
+
+    private void startGroup(String name, String material) {
+        currentGroup = new ObjData.Group(name, material);
+        currentGroup.inheritsMaterial = !materialKnown;
+    }
+
+    private void parseFace() {
+        int tokenCount = 0;
+        int vertexCount = 0;
+        while (nextToken()) {
+            tokenCount++;
+            if (vertexCount * 3 + 3 > faceCorners.length) {
+                faceCorners = Arrays.copyOf(faceCorners, faceCorners.length * 2);
+                faceRelative = Arrays.copyOf(faceRelative, faceRelative.length * 2);
+            }
+            if (parseFaceVertex(faceCorners, vertexCount)) {
+                // Check if this vertex has texture coordinates
+                if (faceCorners[vertexCount * 3 + 1] >= 0) {
+                    currentGroup.hasTextureCoords = true;
+                }
+                vertexCount++;
+            }
+        }
+
+        if (tokenCount < 3) {
+            logger.warn("Face with less than 3 vertices at line {}", lineNumber);
+            return;
+        }
+
+        for (int i = 1; i < vertexCount - 1; i++) {
+            addFaceCorner(0);
+            addFaceCorner(i);
+            addFaceCorner(i + 1);
+        }
+    }
+
+    private void addFaceCorner(int vertex) {
+        int offset = vertex * 3;
+        int relative = faceRelative[vertex];
+        if (relative != 0) {
+            int slot = currentGroup.corners.size();
+            for (int attribute = 0; attribute < 3; attribute++) {
+                if ((relative & (1 << attribute)) != 0) {
+                    currentGroup.addRelativeSlot(slot + attribute);
+                }
+            }
+        }
+        currentGroup.addCorner(faceCorners[offset], faceCorners[offset + 1], faceCorners[offset + 2]);
+    }
+
+    private boolean parseFaceVertex(int[] target, int vertex) {
+        int fieldStart = tokenStart;
+        int field = 0;
+        int positionIndex = ObjData.NO_INDEX;
+        int texCoordIndex = ObjData.NO_INDEX;
+        int normalIndex = ObjData.NO_INDEX;
+        int relative = 0;
+
+        for (int i = tokenStart; i <= tokenEnd && field < 3; i++) {
+            if (i < tokenEnd && byteAt(i) != '/') {
+                continue;
+            }
+            if (i > fieldStart) {
+                long value = parseInt(fieldStart, i);
+                if (value == Long.MIN_VALUE) {
+                    return false;
+                }
+                if (value < 0) {
+                    relative |= 1 << field;
+                }
+                switch (field) {
+                    case 0 -> positionIndex = resolveIndex((int) value, data.positionCount());
+                    case 1 -> texCoordIndex = resolveIndex((int) value, data.texCoordCount());
+                    default -> normalIndex = resolveIndex((int) value, data.normalCount());
+                }
+            }
+            field++;
+            fieldStart = i + 1;
+        }
+
+        // A chunk cannot judge relative references that reach back into earlier chunks; they are validated
+        // once the chunk has been rebased
+        boolean deferred = chunk && (relative & 1) != 0;
+        if (positionIndex < 0 && !deferred) {
+            return false;
+        }
+        int offset = vertex * 3;
+        target[offset] = positionIndex;
+        target[offset + 1] = texCoordIndex;
+        target[offset + 2] = normalIndex;
+        faceRelative[vertex] = chunk ? relative : 0;
+        return true;
+    }
+
+    private static int resolveIndex(int index, int size) {
+        if (index < 0) {
+            return size + index;
+        }
+        return index - 1;
+    }
+
+    private int findLineEnd(int from) {
+        int i = from;
+        while (i < end) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private int skipLineTerminator(int index) {
+        if (index >= end) {
+            return end;
+        }
+        if (buffer.get(index) == '\r' && index + 1 < end && buffer.get(index + 1) == '\n') {
+            return index + 2;
+        }
+        return index + 1;
+    }
+
+    private boolean nextToken() {
+        int i = position;
+        while (i < lineEnd && isWhitespace(buffer.get(i))) {
+            i++;
+        }
+        if (i >= lineEnd) {
+            position = lineEnd;
+            return false;
+        }
+        tokenStart = i;
+        while (i < lineEnd && !isWhitespace(buffer.get(i))) {
+            i++;
+        }
+        tokenEnd = i;
+        position = i;
+        return true;
+    }
+
+    private int collectTokens(int count) {
+        int collected = 0;
+        while (collected < count && nextToken()) {
+            tokenStarts[collected] = tokenStart;
+            tokenEnds[collected] = tokenEnd;
+            collected++;
+        }
+        return collected;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+
+    private byte byteAt(int index) {
+        return buffer.get(index);
+    }
+
+    private boolean tokenEquals(String keyword) {
+        if (tokenEnd - tokenStart != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (byteAt(tokenStart + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private float tokenFloat(int token) {
+        return parseFloat(tokenStarts[token], tokenEnds[token]);
+    }
+
+    private float parseFloat(int start, int stop) {
+        int i = start;
+        boolean negative = false;
+        byte b = byteAt(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        while (i < stop && (b = byteAt(i)) >= '0' && b <= '9') {
+            mantissa = mantissa * 10 + (b - '0');
+            sawDigit = true;
+            if (mantissa > MAX_EXACT_MANTISSA) {
+                return parseFloatSlow(start, stop);
+            }
+            i++;
+        }
+        if (i < stop && byteAt(i) == '.') {
+            i++;
+            while (i < stop && (b = byteAt(i)) >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                exponent--;
+                sawDigit = true;
+                if (mantissa > MAX_EXACT_MANTISSA) {
+                    return parseFloatSlow(start, stop);
+                }
+                i++;
+            }
+        }
+        if (!sawDigit) {
+            return parseFloatSlow(start, stop);
+        }
+        if (i < stop && ((b = byteAt(i)) == 'e' || b == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < stop && ((b = byteAt(i)) == '-' || b == '+')) {
+                negativeExponent = b == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            while (i < stop && (b = byteAt(i)) >= '0' && b <= '9' && explicitExponent < 100) {
+                explicitExponent = explicitExponent * 10 + (b - '0');
+                i++;
+            }
+            if (i == exponentStart) {
+                return parseFloatSlow(start, stop);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != stop || exponent < -10 || exponent > 10) {
+            return parseFloatSlow(start, stop);
+        }
+
+        float value = exponent < 0
+            ? mantissa / POWERS_OF_TEN[-exponent]
+            : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private float parseFloatSlow(int start, int stop) {
+        // Long mantissas, extreme exponents and exotic spellings (NaN, hex, 1.0f) go through the JDK
+        return Float.parseFloat(new String(bytes(start, stop), 0, stop - start, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Parses a signed decimal int, returning {@link Long#MIN_VALUE} when the text is not a valid int.
+     */
+    private long parseInt(int start, int stop) {
+        int i = start;
+        boolean negative = false;
+        byte b = byteAt(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+        if (i == stop || stop - i > 10) {
+            return Long.MIN_VALUE;
+        }
+
+        long value = 0;
+        for (; i < stop; i++) {
+            b = byteAt(i);
+            if (b < '0' || b > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (b - '0');
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return value;
+    }
+
+    private byte[] bytes(int start, int stop) {
+        int length = stop - start;
+        if (length > scratch.length) {
+            scratch = new byte[length];
+        }
+        buffer.get(start, scratch, 0, length);
+        return scratch;
+    }
+
+    private String tokenText() {
+        return new String(bytes(tokenStart, tokenEnd), 0, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+    }
+
+    private String restOfLine() {
+        String text = new String(bytes(position, lineEnd), 0, lineEnd - position, StandardCharsets.UTF_8).trim();
+        position = lineEnd;
+        return text;
+    }
+
+    private String lineText() {
+        return new String(bytes(lineStart, lineEnd), 0, lineEnd - lineStart, StandardCharsets.UTF_8).trim();
+    }
+
+    private void logIgnored() {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Ignoring OBJ directive: {}", tokenText());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.sim3d.loader;
+
+import com.sim3d.loader.ObjData.Group;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Splits large OBJ buffers into line-aligned chunks, parses them on the common ForkJoinPool and stitches the
+ * results back together so they match a single sequential {@link ObjParser} pass.
+ * Line numbers in parse warnings are relative to the chunk they occur in.
+ */
+final class ParallelObjParser {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelObjParser.class);
+
+    static final int PARALLEL_THRESHOLD_BYTES = 8 * 1024 * 1024;
+    private static final int MIN_CHUNK_BYTES = 1024 * 1024;
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private ParallelObjParser() {}
+
+    static ObjData parse(ByteBuffer buffer) {
+        int start = buffer.position();
+        int end = buffer.limit();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (end - start < PARALLEL_THRESHOLD_BYTES || parallelism < 2) {
+            return new ObjParser(buffer).parse();
+        }
+
+        int chunkCount = Math.max(2, Math.min(parallelism * CHUNKS_PER_WORKER, (end - start) / MIN_CHUNK_BYTES));
+        int[] bounds = splitLines(buffer, start, end, chunkCount);
+
+        List<ForkJoinTask<ObjData>> tasks = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            int chunkStart = bounds[i];
+            int chunkEnd = bounds[i + 1];
+            tasks.add(ForkJoinPool.commonPool().submit(() -> new ObjParser(buffer, chunkStart, chunkEnd, true).parse()));
+        }
+
+        List<ObjData> chunks = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<ObjData> task : tasks) {
+            chunks.add(task.join());
+        }
+
+        ObjData stitched = stitch(chunks);
+        if (stitched == null) {
+            // A relative index pointed before the start of the file; the sequential parser drops such vertices
+            // before triangulating, which changes the fan, so let it produce the reference result
+            logger.debug("Invalid relative face index, re-parsing sequentially");
+            return new ObjParser(buffer).parse();
+        }
+        logger.debug("Parsed {} bytes of OBJ data in {} chunks", end - start, chunks.size());
+        return stitched;
+    }
+
+    private static int[] splitLines(ByteBuffer buffer, int start, int end, int chunkCount) {
+        int[] bounds = new int[chunkCount + 1];
+        int count = 0;
+        bounds[count++] = start;
+        long size = end - start;
+        for (int i = 1; i < chunkCount; i++) {
+            int split = Math.max(bounds[count - 1], (int) (start + size * i / chunkCount));
+            while (split < end && buffer.get(split) != '\n' && buffer.get(split) != '\r') {
+                split++;
+            }
+            if (split < end && buffer.get(split) == '\r') {
+                split++;
+            }
+            if (split < end && buffer.get(split) == '\n') {
+                split++;
+            }
+            if (split > bounds[count - 1] && split < end) {
+                bounds[count++] = split;
+            }
+        }
+        bounds[count++] = end;
+        return count == bounds.length ? bounds : Arrays.copyOf(bounds, count);
+    }
+
+    private static ObjData stitch(List<ObjData> chunks) {
+        ObjData result = new ObjData();
+        int positions = 0;
+        int texCoords = 0;
+        int normals = 0;
+        for (ObjData chunk : chunks) {
+            positions += chunk.positions.size();
+            texCoords += chunk.texCoords.size();
+            normals += chunk.normals.size();
+        }
+        result.positions.ensureCapacity(positions);
+        result.texCoords.ensureCapacity(texCoords);
+        result.normals.ensureCapacity(normals);
+
+        Group current = new Group("default", null);
+        for (ObjData chunk : chunks) {
+            int[] bases = { result.positionCount(), result.texCoordCount(), result.normalCount() };
+            for (Group segment : chunk.groups) {
+                if (!rebase(segment, bases)) {
+                    return null;
+                }
+            }
+
+            result.positions.add(chunk.positions.array(), 0, chunk.positions.size());
+            result.texCoords.add(chunk.texCoords.array(), 0, chunk.texCoords.size());
+            result.normals.add(chunk.normals.array(), 0, chunk.normals.size());
+            for (String library : chunk.materialLibraries) {
+                if (!result.materialLibraries.contains(library)) {
+                    result.materialLibraries.add(library);
+                }
+            }
+
+            // The first segment continues whatever group was open at the end of the previous chunk
+            Group continuation = chunk.groups.get(0);
+            current.corners.add(continuation.corners.array(), 0, continuation.corners.size());
+            current.hasTextureCoords |= continuation.hasTextureCoords;
+
+            for (int i = 1; i < chunk.groups.size(); i++) {
+                if (!current.isEmpty()) {
+                    result.groups.add(current);
+                }
+                Group next = chunk.groups.get(i);
+                // Segments opened before the chunk's first o/g or usemtl take over what was open before
+                if (next.name == null) {
+                    next.name = current.name;
+                }
+                if (next.inheritsMaterial) {
+                    next.material = current.material;
+                    next.inheritsMaterial = false;
+                }
+                current = next;
+            }
+        }
+        if (!current.isEmpty()) {
+            result.groups.add(current);
+        }
+        return result;
+    }
+
+    private static boolean rebase(Group segment, int[] bases) {
+        if (segment.relativeSlots == null) {
+            return true;
+        }
+        int[] corners = segment.corners.array();
+        int[] slots = segment.relativeSlots.array();
+        for (int i = 0; i < segment.relativeSlots.size(); i++) {
+            int slot = slots[i];
+            int attribute = slot % 3;
+            int index = corners[slot] + bases[attribute];
+            if (attribute == 0 && index < 0) {
+                return false;
+            }
+            if (attribute == 1 && index >= 0) {
+                segment.hasTextureCoords = true;
+            }
+            corners[slot] = index;
+        }
+        segment.relativeSlots = null;
+        return true;
+    }
+}
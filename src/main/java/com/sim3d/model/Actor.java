@@ -1,6 +1,7 @@
 package com.sim3d.model;
 
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
 public class Actor extends GameObject {
     private String subtype;
@@ -38,9 +39,9 @@ public class Actor extends GameObject {
             velocity.z = (float) Math.sin(angle) * speed;
         }
 
-        Vector3f position = transform.getPosition();
-        position.x += velocity.x * deltaTime;
-        position.z += velocity.z * deltaTime;
+        Vector3fc position = transform.getPosition();
+        transform.setPosition(position.x() + velocity.x * deltaTime, position.y(),
+            position.z() + velocity.z * deltaTime);
     }
 
     public String getSubtype() {
@@ -1,6 +1,7 @@
 package com.sim3d.model;
 
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
 public class Portal {
     private String id;
@@ -36,14 +37,14 @@ public class Portal {
     }
 
     public boolean isPlayerInTrigger(Vector3f playerPos) {
-        Vector3f portalPos = transform.getPosition();
+        Vector3fc portalPos = transform.getPosition();
         float halfWidth = triggerSize.x / 2;
         float halfHeight = triggerSize.y / 2;
         float halfDepth = triggerSize.z / 2;
 
-        return playerPos.x >= portalPos.x - halfWidth && playerPos.x <= portalPos.x + halfWidth &&
-               playerPos.y >= portalPos.y - halfHeight && playerPos.y <= portalPos.y + halfHeight &&
-               playerPos.z >= portalPos.z - halfDepth && playerPos.z <= portalPos.z + halfDepth;
+        return playerPos.x >= portalPos.x() - halfWidth && playerPos.x <= portalPos.x() + halfWidth &&
+               playerPos.y >= portalPos.y() - halfHeight && playerPos.y <= portalPos.y() + halfHeight &&
+               playerPos.z >= portalPos.z() - halfDepth && playerPos.z <= portalPos.z() + halfDepth;
     }
 
     public String getId() {
@@ -1,11 +1,24 @@
 package com.sim3d.model;
 
+import org.joml.Matrix3f;
+import org.joml.Matrix3fc;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
+/**
+ * Position, rotation in degrees about X, Y and Z, and scale of an object. Changes go through the setters, which
+ * bump a version, so the world and normal matrices are only rebuilt after the transform actually changed.
+ */
 public class Transform {
     private Vector3f position;
     private Vector3f rotation;
     private Vector3f scale;
+    private int version;
+    private final Matrix4f worldMatrix = new Matrix4f();
+    private final Matrix3f normalMatrix = new Matrix3f();
+    private int matrixVersion = -1;
 
     public Transform() {
         this.position = new Vector3f(0, 0, 0);
@@ -13,7 +26,7 @@ public class Transform {
         this.scale = new Vector3f(1, 1, 1);
     }
 
-    public Transform(Vector3f position, Vector3f rotation, Vector3f scale) {
+    public Transform(Vector3fc position, Vector3fc rotation, Vector3fc scale) {
         this.position = new Vector3f(position);
         this.rotation = new Vector3f(rotation);
         this.scale = new Vector3f(scale);
@@ -23,43 +36,87 @@ public class Transform {
         return new Transform();
     }
 
-    public Vector3f getPosition() {
+    public Vector3fc getPosition() {
         return position;
     }
 
-    public void setPosition(Vector3f position) {
+    public void setPosition(Vector3fc position) {
         this.position.set(position);
+        version++;
     }
 
     public void setPosition(float x, float y, float z) {
         this.position.set(x, y, z);
+        version++;
     }
 
-    public Vector3f getRotation() {
+    public Vector3fc getRotation() {
         return rotation;
     }
 
-    public void setRotation(Vector3f rotation) {
+    public void setRotation(Vector3fc rotation) {
         this.rotation.set(rotation);
+        version++;
     }
 
     public void setRotation(float x, float y, float z) {
         this.rotation.set(x, y, z);
+        version++;
     }
 
-    public Vector3f getScale() {
+    public Vector3fc getScale() {
         return scale;
     }
 
-    public void setScale(Vector3f scale) {
+    public void setScale(Vector3fc scale) {
         this.scale.set(scale);
+        version++;
     }
 
     public void setScale(float x, float y, float z) {
         this.scale.set(x, y, z);
+        version++;
     }
 
     public void setUniformScale(float scale) {
         this.scale.set(scale, scale, scale);
+        version++;
+    }
+
+    /**
+     * Counter bumped by every change, for caches derived from this transform.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Object to world matrix: scale, then rotation about Z, Y and X, then translation.
+     */
+    public Matrix4fc getWorldMatrix() {
+        updateMatrices();
+        return worldMatrix;
+    }
+
+    /**
+     * Inverse transpose of the world matrix's rotation and scale, which keeps normals perpendicular to their
+     * surfaces under non-uniform scale.
+     */
+    public Matrix3fc getNormalMatrix() {
+        updateMatrices();
+        return normalMatrix;
+    }
+
+    private void updateMatrices() {
+        if (matrixVersion == version) {
+            return;
+        }
+        worldMatrix.translation(position)
+            .rotateX((float) Math.toRadians(rotation.x))
+            .rotateY((float) Math.toRadians(rotation.y))
+            .rotateZ((float) Math.toRadians(rotation.z))
+            .scale(scale)
+            .normal(normalMatrix);
+        matrixVersion = version;
     }
 }
@@ -4,6 +4,8 @@ in vec3 fragColor;
 in vec3 fragNormal;
 in vec3 fragPos;
 in vec2 fragTexCoord;
+in vec3 fragTint;
+flat in float fragLayer;
 
 out vec4 FragColor;
 
@@ -12,6 +14,9 @@ uniform vec3 lightDirection;
 uniform float ambientStrength;
 uniform sampler2D textureSampler;
 uniform bool useTexture;
+// Textures packed by TextureArrayBuilder: the array on unit 1, sampled at the instance's layer
+uniform sampler2DArray textureArraySampler;
+uniform bool useTextureArray;
 uniform bool isTransparent;
 uniform float transparency;
 
@@ -22,12 +27,15 @@ void main() {
     float diff = max(dot(norm, lightDir), 0.0);
     
     // Determine the base color (texture or object color)
+    vec3 color = objectColor * fragTint;
     vec3 baseColor;
     if (useTexture) {
-        vec4 texColor = texture(textureSampler, fragTexCoord);
-        baseColor = mix(objectColor, texColor.rgb, texColor.a);
+        vec4 texColor = useTextureArray
+            ? texture(textureArraySampler, vec3(fragTexCoord, fragLayer))
+            : texture(textureSampler, fragTexCoord);
+        baseColor = mix(color, texColor.rgb, texColor.a);
     } else {
-        baseColor = objectColor;
+        baseColor = color;
     }
     
     vec3 ambient = ambientStrength * baseColor;
@@ -4,21 +4,50 @@ layout (location = 0) in vec3 aPos;
 layout (location = 1) in vec3 aColor;
 layout (location = 2) in vec3 aNormal;
 layout (location = 3) in vec2 aTexCoord;
+// Constant per-mesh attributes set by Mesh.render(): position decode scale (xyz) and whether the normal is
+// octahedral-encoded (w), and the position decode offset
+layout (location = 4) in vec4 aPositionScale;
+layout (location = 5) in vec3 aPositionOffset;
+// Per-instance attributes streamed by InstanceBuffer for instanced draws: the model matrix, the colour tint
+// with the texture array layer in w, and the normal matrix
+layout (location = 6) in mat4 aInstanceModel;
+layout (location = 10) in vec4 aInstanceColor;
+layout (location = 11) in mat3 aInstanceNormal;
 
 out vec3 fragColor;
 out vec3 fragNormal;
 out vec3 fragPos;
 out vec2 fragTexCoord;
+out vec3 fragTint;
+flat out float fragLayer;
 
 uniform mat4 model;
+// Inverse transpose of the model matrix's upper 3x3, computed once per object on the CPU
+uniform mat3 normalMatrix;
 uniform mat4 view;
 uniform mat4 projection;
+uniform bool useInstancing;
+
+vec3 decodeOctahedral(vec2 e) {
+    vec3 n = vec3(e, 1.0 - abs(e.x) - abs(e.y));
+    if (n.z < 0.0) {
+        n.xy = (1.0 - abs(n.yx)) * vec2(n.x >= 0.0 ? 1.0 : -1.0, n.y >= 0.0 ? 1.0 : -1.0);
+    }
+    return normalize(n);
+}
 
 void main() {
-    fragPos = vec3(model * vec4(aPos, 1.0));
-    fragNormal = mat3(transpose(inverse(model))) * aNormal;
+    vec3 position = aPos * aPositionScale.xyz + aPositionOffset;
+    vec3 normal = aPositionScale.w > 0.5 ? decodeOctahedral(aNormal.xy) : aNormal;
+
+    mat4 modelMatrix = useInstancing ? aInstanceModel : model;
+
+    fragPos = vec3(modelMatrix * vec4(position, 1.0));
+    fragNormal = (useInstancing ? aInstanceNormal : normalMatrix) * normal;
     fragColor = aColor;
     fragTexCoord = aTexCoord;
+    fragTint = useInstancing ? aInstanceColor.rgb : vec3(1.0);
+    fragLayer = useInstancing ? aInstanceColor.w : 0.0;
     
-    gl_Position = projection * view * model * vec4(aPos, 1.0);
+    gl_Position = projection * view * modelMatrix * vec4(position, 1.0);
 }
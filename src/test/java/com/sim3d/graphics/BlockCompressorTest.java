@@ -0,0 +1,115 @@
+package com.sim3d.graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockCompressorTest {
+    private static final int SIZE = 64;
+    // Half a step of the 5-bit red and blue and 6-bit green endpoints, what a flat block can be off by
+    private static final int[] FLAT_ERROR = {4, 2, 4, 0};
+
+    @Test
+    void flatColorRoundTripsWithinRounding() {
+        ByteBuffer rgba = image((x, y, c) -> new int[] {200, 90, 30, 255}[c]);
+        for (TextureFormat format : new TextureFormat[] {TextureFormat.BC1, TextureFormat.BC3}) {
+            ByteBuffer decoded = roundTrip(format, rgba);
+            for (int c = 0; c < 4; c++) {
+                assertTrue(maxError(rgba, decoded, c) <= FLAT_ERROR[c], format + " channel " + c);
+            }
+        }
+    }
+
+    @Test
+    void gradientRoundTripsWithSmallError() {
+        ByteBuffer rgba = image((x, y, c) -> switch (c) {
+            case 0 -> x * 255 / (SIZE - 1);
+            case 1 -> y * 255 / (SIZE - 1);
+            case 2 -> (x + y) * 255 / (2 * SIZE - 2);
+            default -> 255;
+        });
+        for (TextureFormat format : new TextureFormat[] {TextureFormat.BC1, TextureFormat.BC3}) {
+            ByteBuffer decoded = roundTrip(format, rgba);
+            for (int c = 0; c < 3; c++) {
+                assertTrue(rmse(rgba, decoded, c) <= 4.0, format + " channel " + c);
+                assertTrue(maxError(rgba, decoded, c) <= 12, format + " channel " + c);
+            }
+            assertEquals(0, maxError(rgba, decoded, 3), format + " alpha");
+        }
+    }
+
+    @Test
+    void alphaRampKeepsAlphaInBc3() {
+        ByteBuffer rgba = image((x, y, c) -> c == 3 ? x * 255 / (SIZE - 1) : 128);
+        assertFalse(BlockCompressor.isOpaque(rgba, SIZE, SIZE));
+        ByteBuffer decoded = roundTrip(TextureFormat.BC3, rgba);
+        assertTrue(maxError(rgba, decoded, 3) <= 3, "alpha");
+        for (int c = 0; c < 3; c++) {
+            assertTrue(maxError(rgba, decoded, c) <= FLAT_ERROR[c], "channel " + c);
+        }
+    }
+
+    @Test
+    void partialBlocksRoundTrip() {
+        int width = 7;
+        int height = 5;
+        ByteBuffer rgba = ByteBuffer.allocate(width * height * 4);
+        for (int i = 0; i < width * height; i++) {
+            rgba.put(i * 4, (byte) 40).put(i * 4 + 1, (byte) 160).put(i * 4 + 2, (byte) 220).put(i * 4 + 3, (byte) 255);
+        }
+        ByteBuffer blocks = ByteBuffer.allocate(TextureFormat.BC1.levelBytes(width, height));
+        BlockCompressor.encode(TextureFormat.BC1, rgba, width, height, blocks);
+        ByteBuffer decoded = ByteBuffer.allocate(width * height * 4);
+        BlockCompressor.decode(TextureFormat.BC1, blocks, width, height, decoded);
+        for (int c = 0; c < 4; c++) {
+            assertTrue(maxError(rgba, decoded, c) <= FLAT_ERROR[c], "channel " + c);
+        }
+    }
+
+    private interface Pixel {
+        int value(int x, int y, int channel);
+    }
+
+    private static ByteBuffer image(Pixel pixel) {
+        ByteBuffer rgba = ByteBuffer.allocate(SIZE * SIZE * 4);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                for (int c = 0; c < 4; c++) {
+                    rgba.put((y * SIZE + x) * 4 + c, (byte) pixel.value(x, y, c));
+                }
+            }
+        }
+        return rgba;
+    }
+
+    private static ByteBuffer roundTrip(TextureFormat format, ByteBuffer rgba) {
+        ByteBuffer blocks = ByteBuffer.allocate(format.levelBytes(SIZE, SIZE));
+        BlockCompressor.encode(format, rgba, SIZE, SIZE, blocks);
+        ByteBuffer decoded = ByteBuffer.allocate(SIZE * SIZE * 4);
+        BlockCompressor.decode(format, blocks, SIZE, SIZE, decoded);
+        return decoded;
+    }
+
+    private static int maxError(ByteBuffer expected, ByteBuffer actual, int channel) {
+        int max = 0;
+        for (int i = channel; i < expected.capacity(); i += 4) {
+            max = Math.max(max, Math.abs((expected.get(i) & 0xFF) - (actual.get(i) & 0xFF)));
+        }
+        return max;
+    }
+
+    private static double rmse(ByteBuffer expected, ByteBuffer actual, int channel) {
+        double sum = 0;
+        int count = 0;
+        for (int i = channel; i < expected.capacity(); i += 4) {
+            int difference = (expected.get(i) & 0xFF) - (actual.get(i) & 0xFF);
+            sum += difference * difference;
+            count++;
+        }
+        return Math.sqrt(sum / count);
+    }
+}